@@ -0,0 +1,687 @@
+import java.awt.Rectangle;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.rit.pj.BarrierAction;
+import edu.rit.pj.ParallelRegion;
+import edu.rit.pj.ParallelTeam;
+
+
+/**
+ * BandedSMPGameOfLifeSimulator splits a bounded bit grid world into bands of
+ * contiguous rows, one band per thread of a Parallel Team.  Each band keeps
+ * its own boards with a halo row above and below; the only data a thread
+ * reads from another band is the boundary row copied into its halos at the
+ * start of a generation, so threads never write to shared storage.  Rows
+ * that are empty, along with both of their neighbors, are skipped.
+ *
+ * Every few generations the band boundaries are moved so that each band holds
+ * a similar share of the live cells, much like
+ * DynamicNeighborCommGameOfLifeSimulator balances processes, but within one
+ * JVM.  A row weighs one more than its live cells, so that long empty
+ * stretches of the world are shared out as well.
+ * @author Alex Maskovyak
+ *
+ */
+public class BandedSMPGameOfLifeSimulator implements GameOfLifeSimulator {
+
+	//
+	// Private member variables
+	//
+	public static final int DEFAULT_REBALANCE_INTERVAL = 8;
+	public static final double DEFAULT_IMBALANCE_TOLERANCE = 1.1;
+
+	// world boundary
+	protected int xMin, yMin;
+	protected int width, height;
+
+	// row layout, the same as BitGridGameOfLifeSimulator
+	protected int words;
+	protected int stride;
+	protected long lastWordMask;
+
+	// wrapped positions, only valid if wrapping is true
+	protected boolean wrapping;
+	protected int lastColumnWord, lastColumnBit;
+	protected int ghostWord, ghostBit;
+
+	// cells added or removed since the last step, whose padding words still
+	// need to be wrapped
+	protected boolean bordersDirty;
+
+	// bands from top to bottom, band i is owned by team thread i
+	protected ParallelTeam team;
+	protected GenerationRegion region;
+	protected Band[] bands;
+	protected int bandCount;
+	protected int livingCellCount;
+
+	// load balancing state, nextBands is filled only while rebalancing
+	protected int rebalanceInterval;
+	protected double imbalanceTolerance;
+	protected int iterationCount;
+	protected int[] nextFirstRows;
+	protected Band[] nextBands;
+	protected boolean rebalancing;
+
+	// additional cell / game rules
+	protected CellLifeRules rules;
+	protected CellNeighborhood neighborhood;
+	protected int survivalMask;
+	protected int birthMask;
+
+
+	/**
+	 * Constructor.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded.
+	 * @param cellsFile File containing cells for simulation.
+	 */
+	public BandedSMPGameOfLifeSimulator(
+			CellLifeRules rules,
+			CellNeighborhood neighborhood,
+			File cellsFile)
+	{
+		this(GameOfLifeFileIO.getLiveCells(cellsFile),
+				rules,
+				neighborhood,
+				ParallelTeam.getDefaultThreadCount());
+	}
+
+	/**
+	 * Constructor.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded.
+	 * @param threads Number of threads in the Parallel Team.
+	 */
+	public BandedSMPGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood,
+			int threads)
+	{
+		this(liveCells,
+				rules,
+				neighborhood,
+				threads,
+				DEFAULT_REBALANCE_INTERVAL,
+				DEFAULT_IMBALANCE_TOLERANCE);
+	}
+
+	/**
+	 * Constructor.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded.
+	 * @param threads Number of threads in the Parallel Team.
+	 * @param rebalanceInterval Number of generations between load balance
+	 * checks.
+	 * @param imbalanceTolerance How many times the average weight the
+	 * heaviest band may carry before the bands are rebalanced.
+	 */
+	public BandedSMPGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood,
+			int threads,
+			int rebalanceInterval,
+			double imbalanceTolerance)
+	{
+		Rectangle bounds = neighborhood.getBounds();
+		if (bounds == null) {
+			throw new IllegalArgumentException(
+					"BandedSMPGameOfLifeSimulator requires a bounded neighborhood.");
+		}
+		if (rebalanceInterval < 1) {
+			throw new IllegalArgumentException(
+					"Rebalance interval must be positive: " + rebalanceInterval);
+		}
+
+		this.rules = rules;
+		this.neighborhood = neighborhood;
+		this.survivalMask = BitLifeKernel.survivalMask(rules);
+		this.birthMask = BitLifeKernel.birthMask(rules);
+
+		// size the rows
+		this.xMin = bounds.x;
+		this.yMin = bounds.y;
+		this.width = bounds.width;
+		this.height = bounds.height;
+
+		this.words = (this.width + 63) >>> 6;
+		this.stride = this.words + 2;
+		int lastBits = this.width & 63;
+		this.lastWordMask = (lastBits == 0) ? -1L : ((1L << lastBits) - 1);
+
+		this.wrapping = neighborhood.isWrapping();
+		this.lastColumnWord = (this.width - 1) >>> 6;
+		this.lastColumnBit = (this.width - 1) & 63;
+		this.ghostWord = this.width >>> 6;
+		this.ghostBit = this.width & 63;
+
+		// every band holds at least one row
+		this.team = new ParallelTeam(threads);
+		this.region = new GenerationRegion();
+		this.bandCount = Math.max(1, Math.min(threads, this.height));
+		this.rebalanceInterval = rebalanceInterval;
+		this.imbalanceTolerance = imbalanceTolerance;
+		this.nextFirstRows = new int[this.bandCount + 1];
+
+		// start from an even split
+		this.bands = new Band[this.bandCount];
+		for (int i = 0; i < this.bandCount; ++i) {
+			int firstRow = (int)((long)this.height * i / this.bandCount);
+			int lastRow = (int)((long)this.height * (i + 1) / this.bandCount);
+			this.bands[i] = new Band(firstRow, lastRow - firstRow);
+		}
+
+		// add live cells, then share them out
+		this.addLivingCells(liveCells);
+
+		if (this.planRebalance()) {
+			for (int i = 0; i < this.bandCount; ++i) {
+				this.nextBands[i] = this.rebuildBand(i);
+			}
+			this.installBands();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#performSimulation()
+	 */
+	public void performSimulation() throws Exception {
+		// a step wraps the rows it computes, so only changes made from
+		// outside need their padding filled in here
+		if (this.wrapping && this.bordersDirty) {
+			for (Band band : this.bands) {
+				for (int row = 0; row < band.rows; ++row) {
+					this.wrapRow(band.current, band.rowOffset(row));
+				}
+			}
+		}
+		this.bordersDirty = false;
+
+		this.team.execute(this.region);
+	}
+
+	/**
+	 * One generation, executed by every thread of the team.  Threads beyond
+	 * the number of bands only take part in the barriers.
+	 */
+	protected class GenerationRegion extends ParallelRegion
+	{
+		public void run() throws Exception
+		{
+			final int index = getThreadIndex();
+
+			if (index < bandCount) {
+				fetchHalos(index);
+				stepBand(bands[index]);
+			}
+
+			barrier(new BarrierAction()
+			{
+				public void run() throws Exception
+				{
+					finishGeneration();
+				}
+			});
+
+			if (rebalancing) {
+				if (index < bandCount) {
+					nextBands[index] = rebuildBand(index);
+				}
+
+				barrier(new BarrierAction()
+				{
+					public void run() throws Exception
+					{
+						installBands();
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Copies the boundary rows of the neighboring bands into a band's halos.
+	 * Bands at the top and bottom of a world that does not wrap keep empty
+	 * halos.
+	 * @param index Band to fill in.
+	 */
+	protected void fetchHalos(int index) {
+		Band band = this.bands[index];
+		Band above = (index > 0) ? this.bands[index - 1] :
+			(this.wrapping ? this.bands[this.bandCount - 1] : null);
+		Band below = (index < this.bandCount - 1) ? this.bands[index + 1] :
+			(this.wrapping ? this.bands[0] : null);
+
+		// whole rows are copied, padding words and all
+		band.haloAboveEmpty = true;
+		if (above != null) {
+			int lastRow = above.rows - 1;
+			System.arraycopy(
+					above.current, above.rowOffset(lastRow) - 1,
+					band.current, band.rowOffset(-1) - 1,
+					this.stride);
+			band.haloAboveEmpty = (above.rowPopulation[lastRow] == 0);
+		}
+
+		band.haloBelowEmpty = true;
+		if (below != null) {
+			System.arraycopy(
+					below.current, below.rowOffset(0) - 1,
+					band.current, band.rowOffset(band.rows) - 1,
+					this.stride);
+			band.haloBelowEmpty = (below.rowPopulation[0] == 0);
+		}
+	}
+
+	/**
+	 * Computes the next generation of a band into its next board.
+	 * @param band Band to step.
+	 */
+	protected void stepBand(Band band) {
+		long[] src = band.current;
+		long[] dst = band.next;
+		int[] population = band.rowPopulation;
+		int[] nextPopulation = band.nextRowPopulation;
+		int lastRow = band.rows - 1;
+
+		band.nextPopulation = 0;
+
+		for (int row = 0; row <= lastRow; ++row) {
+			boolean quiet = population[row] == 0 &&
+				((row == 0) ? band.haloAboveEmpty : population[row - 1] == 0) &&
+				((row == lastRow) ? band.haloBelowEmpty : population[row + 1] == 0);
+
+			int offset = band.rowOffset(row);
+
+			// an empty neighborhood stays empty, and an empty next row, padding
+			// included, needs no clearing
+			if (quiet) {
+				if (nextPopulation[row] != 0) {
+					Arrays.fill(dst, offset - 1, offset - 1 + this.stride, 0L);
+					nextPopulation[row] = 0;
+				}
+				continue;
+			}
+
+			BitLifeKernel.stepRow(
+					src,
+					offset - this.stride,
+					offset,
+					offset + this.stride,
+					this.words,
+					dst,
+					offset,
+					this.survivalMask,
+					this.birthMask);
+
+			// cells past the right edge of the world never come to life
+			dst[offset + this.words - 1] &= this.lastWordMask;
+
+			int count = 0;
+			for (int i = 0; i < this.words; ++i) {
+				count += Long.bitCount(dst[offset + i]);
+			}
+			nextPopulation[row] = count;
+			band.nextPopulation += count;
+
+			if (this.wrapping) {
+				this.wrapRow(dst, offset);
+			}
+		}
+	}
+
+	/**
+	 * Fills in the padding words of one row of a wrapping world with copies of
+	 * the row's opposite edge columns.
+	 * @param board Board holding the row.
+	 * @param offset Index of the row's first word.
+	 */
+	protected void wrapRow(long[] board, int offset) {
+		board[offset - 1] =
+			((board[offset + this.lastColumnWord] >>> this.lastColumnBit) & 1L) << 63;
+
+		// the ghost bit lands in the last word's unused bits or in the padding
+		// word; either way stepBand masks it out of the next board
+		long first = board[offset] & 1L;
+		if (this.ghostWord == this.words) {
+			board[offset + this.ghostWord] = first;
+		}
+		else {
+			board[offset + this.ghostWord] =
+				(board[offset + this.ghostWord] & this.lastWordMask) | (first << this.ghostBit);
+		}
+	}
+
+	/**
+	 * Makes every band's next board current and checks the balance of the
+	 * bands.  Runs on a single thread between generations.
+	 */
+	protected void finishGeneration() {
+		this.livingCellCount = 0;
+		for (Band band : this.bands) {
+			band.swapBoards();
+			this.livingCellCount += band.population;
+		}
+
+		this.iterationCount++;
+		if ((this.iterationCount % this.rebalanceInterval) == 0) {
+			this.planRebalance();
+		}
+	}
+
+	/**
+	 * Decides whether the bands are out of balance and, if so, where their
+	 * new boundaries lie.
+	 * @return True if the bands need to be rebuilt, false otherwise.
+	 */
+	protected boolean planRebalance() {
+		if (this.bandCount < 2) {
+			return false;
+		}
+
+		long totalWeight = 0;
+		long heaviest = 0;
+		for (Band band : this.bands) {
+			long weight = (long)band.population + band.rows;
+			totalWeight += weight;
+			heaviest = Math.max(heaviest, weight);
+		}
+
+		if (heaviest <= this.imbalanceTolerance * totalWeight / this.bandCount) {
+			return false;
+		}
+
+		// walk the rows, closing a band once it reaches its share of the
+		// weight, while leaving a row for each of the bands still to come
+		this.nextFirstRows[0] = 0;
+		this.nextFirstRows[this.bandCount] = this.height;
+
+		int band = 1;
+		long weight = 0;
+		int row = 0;
+		for (Band b : this.bands) {
+			for (int i = 0; i < b.rows && band < this.bandCount; ++i, ++row) {
+				weight += b.rowPopulation[i] + 1;
+
+				long share = totalWeight * band / this.bandCount;
+				int rowsLeft = this.height - (row + 1);
+				if ((weight >= share || rowsLeft == this.bandCount - band) &&
+					row + 1 > this.nextFirstRows[band - 1]) {
+					this.nextFirstRows[band++] = row + 1;
+				}
+			}
+		}
+
+		// nothing to do if the boundaries stay put
+		boolean moved = false;
+		for (int i = 0; i < this.bandCount; ++i) {
+			moved |= (this.nextFirstRows[i] != this.bands[i].firstRow);
+		}
+		if (!moved) {
+			return false;
+		}
+
+		this.nextBands = new Band[this.bandCount];
+		this.rebalancing = true;
+		return true;
+	}
+
+	/**
+	 * Creates a band at its new boundaries, copying its rows out of the
+	 * current bands.  Only reads the current bands, so every band can be
+	 * rebuilt at once.
+	 * @param index Band to rebuild.
+	 * @return New band holding the current generation.
+	 */
+	protected Band rebuildBand(int index) {
+		int firstRow = this.nextFirstRows[index];
+		Band band = new Band(firstRow, this.nextFirstRows[index + 1] - firstRow);
+
+		int source = this.bandIndex(firstRow);
+		for (int row = 0; row < band.rows; ++row) {
+			Band old = this.bands[source];
+			int oldRow = firstRow + row - old.firstRow;
+			if (oldRow >= old.rows) {
+				old = this.bands[++source];
+				oldRow = 0;
+			}
+
+			System.arraycopy(
+					old.current, old.rowOffset(oldRow) - 1,
+					band.current, band.rowOffset(row) - 1,
+					this.stride);
+			band.rowPopulation[row] = old.rowPopulation[oldRow];
+			band.population += old.rowPopulation[oldRow];
+		}
+
+		return band;
+	}
+
+	/**
+	 * Replaces the bands with the rebuilt ones.
+	 */
+	protected void installBands() {
+		this.bands = this.nextBands;
+		this.nextBands = null;
+		this.rebalancing = false;
+	}
+
+	/**
+	 * Finds the band holding the specified row.
+	 * @param row Row of the world, from 0 to height - 1.
+	 * @return Index of the band.
+	 */
+	protected int bandIndex(int row) {
+		int index = 0;
+		while (row >= this.bands[index].firstRow + this.bands[index].rows) {
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * Determines whether the cell falls inside of the world.
+	 * @param cell Cell to test.
+	 * @return True if the cell has a bit on a band, false otherwise.
+	 */
+	protected boolean isOnBoard(Cell cell) {
+		int column = cell.x - this.xMin;
+		int row = cell.y - this.yMin;
+		return (column >= 0 && column < this.width && row >= 0 && row < this.height);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#getCurrentState()
+	 */
+	public List<Cell> getCurrentState() {
+		List<Cell> cells = new ArrayList<Cell>(this.livingCellCount);
+
+		for (Band band : this.bands) {
+			for (int row = 0; row < band.rows; ++row) {
+				if (band.rowPopulation[row] == 0) {
+					continue;
+				}
+
+				int offset = band.rowOffset(row);
+				for (int i = 0; i < this.words; ++i) {
+					long word = band.current[offset + i];
+
+					// leave out the ghost bit of a wrapping world
+					if (i == this.words - 1) {
+						word &= this.lastWordMask;
+					}
+
+					while (word != 0) {
+						int bit = Long.numberOfTrailingZeros(word);
+						cells.add(new Cell(
+								this.xMin + (i << 6) + bit,
+								this.yMin + band.firstRow + row));
+						word &= word - 1;
+					}
+				}
+			}
+		}
+
+		return cells;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#addLivingCell()
+	 */
+	public void addLivingCell(Cell livingCell) {
+		this.setCell(livingCell, true);
+	}
+
+	/* (non-Javadoc)
+	 * @see GameOfLifeSimulator#addLivingCells()
+	 */
+	public void addLivingCells(List<Cell> livingCells) {
+		for (Cell c : livingCells) {
+			this.addLivingCell(c);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#clearLivingCells()
+	 */
+	public void clearLivingCells() {
+		for (Band band : this.bands) {
+			Arrays.fill(band.current, 0L);
+			Arrays.fill(band.next, 0L);
+			Arrays.fill(band.rowPopulation, 0);
+			Arrays.fill(band.nextRowPopulation, 0);
+			band.population = 0;
+		}
+		this.livingCellCount = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#removeLivingCell(Cell)
+	 */
+	public void removeLivingCell(Cell livingCell) {
+		this.setCell(livingCell, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#removeLivingCells(java.util.List)
+	 */
+	public void removeLivingCells(List<Cell> livingCells) {
+		for (Cell c : livingCells) {
+			this.removeLivingCell(c);
+		}
+	}
+
+	/**
+	 * Sets the state of one cell, keeping the population counts in step.
+	 * Cells outside of the world can't be stored, and are never alive.
+	 * @param cell Cell to set.
+	 * @param alive True to bring the cell to life, false to kill it.
+	 */
+	protected void setCell(Cell cell, boolean alive) {
+		if (!this.isOnBoard(cell)) {
+			return;
+		}
+
+		int worldRow = cell.y - this.yMin;
+		Band band = this.bands[this.bandIndex(worldRow)];
+		int row = worldRow - band.firstRow;
+		int index = band.rowOffset(row) + ((cell.x - this.xMin) >>> 6);
+		long bit = 1L << (cell.x - this.xMin);
+
+		if (((band.current[index] & bit) != 0) == alive) {
+			return;
+		}
+
+		band.current[index] ^= bit;
+
+		int change = alive ? 1 : -1;
+		band.rowPopulation[row] += change;
+		band.population += change;
+		this.livingCellCount += change;
+		this.bordersDirty = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#getLivingCellCount()
+	 */
+	public int getLivingCellCount() {
+		return this.livingCellCount;
+	}
+
+	/**
+	 * Rows of the world owned by one thread.  Each board holds the band's rows
+	 * laid out as in BitGridGameOfLifeSimulator, plus a halo row above and
+	 * below that receives a copy of the neighboring band's boundary row.  Each
+	 * row's live cell count is kept alongside each board.
+	 */
+	protected class Band {
+
+		// rows of the world held by this band
+		protected int firstRow;
+		protected int rows;
+
+		// current and next generation boards, with their row counts
+		protected long[] current;
+		protected long[] next;
+		protected int[] rowPopulation;
+		protected int[] nextRowPopulation;
+		protected int population;
+		protected int nextPopulation;
+
+		// whether the halos received empty rows this generation
+		protected boolean haloAboveEmpty;
+		protected boolean haloBelowEmpty;
+
+		/**
+		 * Constructor, creates an empty band.
+		 * @param firstRow First row of the world held.
+		 * @param rows Number of rows held.
+		 */
+		protected Band(int firstRow, int rows) {
+			this.firstRow = firstRow;
+			this.rows = rows;
+			this.current = new long[(rows + 2) * stride];
+			this.next = new long[(rows + 2) * stride];
+			this.rowPopulation = new int[rows];
+			this.nextRowPopulation = new int[rows];
+		}
+
+		/**
+		 * Determines the index of the first word of a row.
+		 * @param row Row of the band, from -1 to rows inclusive.
+		 * @return Index into the board arrays.
+		 */
+		protected int rowOffset(int row) {
+			return (row + 1) * stride + 1;
+		}
+
+		/**
+		 * Makes the next board current.
+		 */
+		protected void swapBoards() {
+			long[] board = this.current;
+			this.current = this.next;
+			this.next = board;
+
+			int[] counts = this.rowPopulation;
+			this.rowPopulation = this.nextRowPopulation;
+			this.nextRowPopulation = counts;
+
+			this.population = this.nextPopulation;
+		}
+	}
+}
@@ -0,0 +1,310 @@
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * BitGridGameOfLifeSimulator stores a bounded game world densely, one bit per
+ * cell, in rows of 64-bit words.  Each generation is computed 64 cells at a
+ * time by BitLifeKernel, so its cost depends on the area of the world rather
+ * than on the number of live cells.
+ * @author Alex Maskovyak
+ *
+ */
+public class BitGridGameOfLifeSimulator implements GameOfLifeSimulator {
+
+	//
+	// Private member variables
+	//
+
+	// world boundary
+	protected int xMin, yMin;
+	protected int width, height;
+
+	// board layout: every row has a padding word on either side and the board
+	// has a padding row above and below, all of which stay empty unless the
+	// world wraps
+	protected int words;
+	protected int stride;
+	protected long lastWordMask;
+
+	// wrapped positions, only valid if wrapping is true: the last column's
+	// word and bit within a row, the word and bit just past the last column
+	// that receive a copy of column 0, and the first word of each padding row
+	// along with the row it copies
+	protected boolean wrapping;
+	protected int lastColumnWord, lastColumnBit;
+	protected int ghostWord, ghostBit;
+	protected int topPadding, lastRowStart;
+	protected int bottomPadding, firstRowStart;
+
+	// current and next generation boards
+	protected long[] current;
+	protected long[] next;
+
+	// additional cell / game rules
+	protected CellLifeRules rules;
+	protected CellNeighborhood neighborhood;
+	protected int survivalMask;
+	protected int birthMask;
+
+
+	/**
+	 * Default constructor.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded.
+	 */
+	public BitGridGameOfLifeSimulator(
+			CellLifeRules rules,
+			CellNeighborhood neighborhood) {
+		this(new ArrayList<Cell>(), rules, neighborhood);
+	}
+
+	/**
+	 * Constructor.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded.
+	 */
+	public BitGridGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood)
+	{
+		Rectangle bounds = neighborhood.getBounds();
+		if (bounds == null) {
+			throw new IllegalArgumentException(
+					"BitGridGameOfLifeSimulator requires a bounded neighborhood.");
+		}
+
+		this.rules = rules;
+		this.neighborhood = neighborhood;
+		this.survivalMask = BitLifeKernel.survivalMask(rules);
+		this.birthMask = BitLifeKernel.birthMask(rules);
+
+		// size the boards
+		this.xMin = bounds.x;
+		this.yMin = bounds.y;
+		this.width = bounds.width;
+		this.height = bounds.height;
+
+		this.words = (this.width + 63) >>> 6;
+		this.stride = this.words + 2;
+		int lastBits = this.width & 63;
+		this.lastWordMask = (lastBits == 0) ? -1L : ((1L << lastBits) - 1);
+
+		// where opposite edges are copied to when the world wraps
+		this.wrapping = neighborhood.isWrapping();
+		this.lastColumnWord = (this.width - 1) >>> 6;
+		this.lastColumnBit = (this.width - 1) & 63;
+		this.ghostWord = this.width >>> 6;
+		this.ghostBit = this.width & 63;
+		this.topPadding = this.rowOffset(-1) - 1;
+		this.lastRowStart = this.rowOffset(this.height - 1) - 1;
+		this.bottomPadding = this.rowOffset(this.height) - 1;
+		this.firstRowStart = this.rowOffset(0) - 1;
+
+		this.current = new long[(this.height + 2) * this.stride];
+		this.next = new long[(this.height + 2) * this.stride];
+
+		// add live cells to the board
+		this.addLivingCells(liveCells);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#performSimulation()
+	 */
+	public void performSimulation() throws Exception {
+		this.prepareBorders();
+
+		for (int row = 0; row < this.height; ++row) {
+			this.stepRow(row);
+		}
+
+		this.swapBoards();
+	}
+
+	/**
+	 * Fills in the padding around the current board before a step.  Padding
+	 * stays empty for a hard dead boundary.  When the world wraps, each row
+	 * gets copies of its last column before its first and of its first column
+	 * after its last, then the padding rows get copies of the last and first
+	 * rows, padding and all, which covers the corners.
+	 */
+	protected void prepareBorders() {
+		if (!this.wrapping) {
+			return;
+		}
+
+		long[] board = this.current;
+
+		for (int row = 0; row < this.height; ++row) {
+			int offset = this.rowOffset(row);
+
+			board[offset - 1] =
+				((board[offset + this.lastColumnWord] >>> this.lastColumnBit) & 1L) << 63;
+
+			// the ghost bit lands in the last word's unused bits or in the
+			// padding word; either way stepRow masks it out of the next board
+			long first = board[offset] & 1L;
+			if (this.ghostWord == this.words) {
+				board[offset + this.ghostWord] = first;
+			}
+			else {
+				board[offset + this.ghostWord] =
+					(board[offset + this.ghostWord] & this.lastWordMask) | (first << this.ghostBit);
+			}
+		}
+
+		System.arraycopy(board, this.lastRowStart, board, this.topPadding, this.stride);
+		System.arraycopy(board, this.firstRowStart, board, this.bottomPadding, this.stride);
+	}
+
+	/**
+	 * Computes the next generation of one row into the next board.
+	 * @param row Row of the world, from 0 to height - 1.
+	 */
+	protected void stepRow(int row) {
+		int offset = this.rowOffset(row);
+		BitLifeKernel.stepRow(
+				this.current,
+				offset - this.stride,
+				offset,
+				offset + this.stride,
+				this.words,
+				this.next,
+				offset,
+				this.survivalMask,
+				this.birthMask);
+
+		// cells past the right edge of the world never come to life
+		this.next[offset + this.words - 1] &= this.lastWordMask;
+	}
+
+	/**
+	 * Makes the next board current.
+	 */
+	protected void swapBoards() {
+		long[] temp = this.current;
+		this.current = this.next;
+		this.next = temp;
+	}
+
+	/**
+	 * Determines the index of the first word of a row.
+	 * @param row Row of the world, from -1 to height inclusive.
+	 * @return Index into the board arrays.
+	 */
+	protected int rowOffset(int row) {
+		return (row + 1) * this.stride + 1;
+	}
+
+	/**
+	 * Determines whether the cell falls inside of the board.
+	 * @param cell Cell to test.
+	 * @return True if the cell has a bit on the board, false otherwise.
+	 */
+	protected boolean isOnBoard(Cell cell) {
+		int column = cell.x - this.xMin;
+		int row = cell.y - this.yMin;
+		return (column >= 0 && column < this.width && row >= 0 && row < this.height);
+	}
+
+	/**
+	 * Determines the board index of the word holding the specified cell.
+	 * @param cell Cell on the board.
+	 * @return Index into the board arrays.
+	 */
+	protected int wordIndex(Cell cell) {
+		return this.rowOffset(cell.y - this.yMin) + ((cell.x - this.xMin) >>> 6);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#getCurrentState()
+	 */
+	public List<Cell> getCurrentState() {
+		List<Cell> cells = new ArrayList<Cell>();
+
+		for (int row = 0; row < this.height; ++row) {
+			int offset = this.rowOffset(row);
+			for (int i = 0; i < this.words; ++i) {
+				long word = this.current[offset + i];
+				while (word != 0) {
+					int bit = Long.numberOfTrailingZeros(word);
+					cells.add(new Cell(this.xMin + (i << 6) + bit, this.yMin + row));
+					word &= word - 1;
+				}
+			}
+		}
+
+		return cells;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#addLivingCell()
+	 */
+	public void addLivingCell(Cell livingCell) {
+		// cells outside of the world can't be stored, and are never alive
+		if (!this.isOnBoard(livingCell)) {
+			return;
+		}
+		this.current[this.wordIndex(livingCell)] |= (1L << (livingCell.x - this.xMin));
+	}
+
+	/* (non-Javadoc)
+	 * @see GameOfLifeSimulator#addLivingCells()
+	 */
+	public void addLivingCells(List<Cell> livingCells) {
+		for (Cell c : livingCells) {
+			this.addLivingCell(c);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#clearLivingCells()
+	 */
+	public void clearLivingCells() {
+		java.util.Arrays.fill(this.current, 0L);
+		java.util.Arrays.fill(this.next, 0L);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#removeLivingCell(Cell)
+	 */
+	public void removeLivingCell(Cell livingCell) {
+		if (!this.isOnBoard(livingCell)) {
+			return;
+		}
+		this.current[this.wordIndex(livingCell)] &= ~(1L << (livingCell.x - this.xMin));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#removeLivingCells(java.util.List)
+	 */
+	public void removeLivingCells(List<Cell> livingCells) {
+		for (Cell c : livingCells) {
+			this.removeLivingCell(c);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#getLivingCellCount()
+	 */
+	public int getLivingCellCount() {
+		int count = 0;
+		for (int row = 0; row < this.height; ++row) {
+			int offset = this.rowOffset(row);
+			for (int i = 0; i < this.words; ++i) {
+				count += Long.bitCount(this.current[offset + i]);
+			}
+		}
+		return count;
+	}
+}
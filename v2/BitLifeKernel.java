@@ -0,0 +1,195 @@
+/**
+ * Bit-parallel next-state computation for boards stored as rows of 64-bit
+ * words, bit j of a word holding the cell 64 * word + j.  Neighbor counts are
+ * accumulated with full-adder logic across the eight shifted neighbor masks,
+ * so all 64 cells of a word are decided at once.
+ * @author Alex Maskovyak
+ *
+ */
+public abstract class BitLifeKernel {
+
+	// masks for B3/S23, which gets a shorter path through the rule logic
+	public static final int CONWAY_SURVIVAL_MASK = (1 << 2) | (1 << 3);
+	public static final int CONWAY_BIRTH_MASK = (1 << 3);
+
+	/**
+	 * Builds a 9-bit mask with bit n set if a cell with n neighbors survives.
+	 * @param rules Rules to ask.
+	 * @return Survival mask.
+	 */
+	public static int survivalMask(CellLifeRules rules) {
+		if (rules instanceof RuleStringCellLifeRules) {
+			return ((RuleStringCellLifeRules)rules).getSurvivalMask();
+		}
+
+		int mask = 0;
+		for (int n = 0; n <= 8; ++n) {
+			if (rules.lives(n)) {
+				mask |= (1 << n);
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Builds a 9-bit mask with bit n set if a cell with n neighbors is born.
+	 * @param rules Rules to ask.
+	 * @return Birth mask.
+	 */
+	public static int birthMask(CellLifeRules rules) {
+		if (rules instanceof RuleStringCellLifeRules) {
+			return ((RuleStringCellLifeRules)rules).getBirthMask();
+		}
+
+		int mask = 0;
+		for (int n = 0; n <= 8; ++n) {
+			if (rules.isBorn(n)) {
+				mask |= (1 << n);
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Computes the next state of the 64 cells in a word from that word and the
+	 * words surrounding it.
+	 * @param abovePrev Word to the west of the word above.
+	 * @param above Word above.
+	 * @param aboveNext Word to the east of the word above.
+	 * @param prev Word to the west.
+	 * @param center Word being computed.
+	 * @param next Word to the east.
+	 * @param belowPrev Word to the west of the word below.
+	 * @param below Word below.
+	 * @param belowNext Word to the east of the word below.
+	 * @param survivalMask Neighbor counts at which live cells survive.
+	 * @param birthMask Neighbor counts at which dead cells are born.
+	 * @return Next state of the center word.
+	 */
+	public static long nextWord(
+			long abovePrev, long above, long aboveNext,
+			long prev, long center, long next,
+			long belowPrev, long below, long belowNext,
+			int survivalMask,
+			int birthMask)
+	{
+		// bit j of each mask holds the neighbor in that direction of cell j
+		long nw = (above << 1) | (abovePrev >>> 63);
+		long n  = above;
+		long ne = (above >>> 1) | (aboveNext << 63);
+		long w  = (center << 1) | (prev >>> 63);
+		long e  = (center >>> 1) | (next << 63);
+		long sw = (below << 1) | (belowPrev >>> 63);
+		long s  = below;
+		long se = (below >>> 1) | (belowNext << 63);
+
+		// sum the eight masks into a 4-bit count per cell:
+		// two full adders and a half adder for the ones...
+		long s0 = nw ^ n ^ ne;
+		long c0 = (nw & n) | (ne & (nw ^ n));
+		long s1 = w ^ e ^ sw;
+		long c1 = (w & e) | (sw & (w ^ e));
+		long s2 = s ^ se;
+		long c2 = s & se;
+
+		long bit0 = s0 ^ s1 ^ s2;
+		long c3 = (s0 & s1) | (s2 & (s0 ^ s1));
+
+		// ...then the four carries of weight two...
+		long t = c0 ^ c1 ^ c2;
+		long c4 = (c0 & c1) | (c2 & (c0 ^ c1));
+		long bit1 = t ^ c3;
+		long c5 = t & c3;
+
+		// ...and the two carries of weight four
+		long bit2 = c4 ^ c5;
+		long bit3 = c4 & c5;
+
+		if (survivalMask == CONWAY_SURVIVAL_MASK && birthMask == CONWAY_BIRTH_MASK) {
+			// count of 2 or 3, and either alive or exactly 3
+			return bit1 & ~bit2 & ~bit3 & (bit0 | center);
+		}
+
+		return applyRules(bit0, bit1, bit2, bit3, center, survivalMask, birthMask);
+	}
+
+	/**
+	 * Computes the next state of one row.  Each row is stored with a word of
+	 * padding on either side, so the rows are read from offset - 1 through
+	 * offset + words inclusive.
+	 * @param src Current board.
+	 * @param aboveOffset Index of the first word of the row above.
+	 * @param offset Index of the first word of the row to compute.
+	 * @param belowOffset Index of the first word of the row below.
+	 * @param words Number of words in a row, excluding padding.
+	 * @param dst Board to receive the row.
+	 * @param dstOffset Index of the first word of the destination row.
+	 * @param survivalMask Neighbor counts at which live cells survive.
+	 * @param birthMask Neighbor counts at which dead cells are born.
+	 */
+	public static void stepRow(
+			long[] src,
+			int aboveOffset,
+			int offset,
+			int belowOffset,
+			int words,
+			long[] dst,
+			int dstOffset,
+			int survivalMask,
+			int birthMask)
+	{
+		for (int i = 0; i < words; ++i) {
+			dst[dstOffset + i] = nextWord(
+					src[aboveOffset + i - 1], src[aboveOffset + i], src[aboveOffset + i + 1],
+					src[offset + i - 1], src[offset + i], src[offset + i + 1],
+					src[belowOffset + i - 1], src[belowOffset + i], src[belowOffset + i + 1],
+					survivalMask,
+					birthMask);
+		}
+	}
+
+	/**
+	 * Selects the cells that are alive in the next generation from bit-sliced
+	 * neighbor counts.
+	 * @param bit0 Ones bit of each cell's count.
+	 * @param bit1 Twos bit of each cell's count.
+	 * @param bit2 Fours bit of each cell's count.
+	 * @param bit3 Eights bit of each cell's count.
+	 * @param center Current state of the cells.
+	 * @param survivalMask Neighbor counts at which live cells survive.
+	 * @param birthMask Neighbor counts at which dead cells are born.
+	 * @return Next state of the cells.
+	 */
+	public static long applyRules(
+			long bit0, long bit1, long bit2, long bit3,
+			long center,
+			int survivalMask,
+			int birthMask)
+	{
+		long survivors = 0;
+		long births = 0;
+
+		for (int count = 0; count <= 8; ++count) {
+			int bit = 1 << count;
+			if (((survivalMask | birthMask) & bit) == 0) {
+				continue;
+			}
+
+			// cells whose count is exactly this value
+			long equal =
+				((count & 1) != 0 ? bit0 : ~bit0) &
+				((count & 2) != 0 ? bit1 : ~bit1) &
+				((count & 4) != 0 ? bit2 : ~bit2) &
+				((count & 8) != 0 ? bit3 : ~bit3);
+
+			if ((survivalMask & bit) != 0) {
+				survivors |= equal;
+			}
+			if ((birthMask & bit) != 0) {
+				births |= equal;
+			}
+		}
+
+		return (center & survivors) | (~center & births);
+	}
+}
@@ -0,0 +1,513 @@
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import edu.rit.mp.IntegerBuf;
+import edu.rit.mp.ObjectBuf;
+import edu.rit.pj.Comm;
+import edu.rit.pj.CommRequest;
+import edu.rit.pj.CommStatus;
+import edu.rit.util.Range;
+
+
+/**
+ * BlockCommGameOfLifeSimulator distributes the world across the processors
+ * as a 2D Cartesian grid of blocks, rather than the column strips of
+ * NeighborCommGameOfLifeSimulator.  A strip's borders stay the height of the
+ * world however many processors there are, while a block's perimeter shrinks
+ * along with its area, so border traffic keeps falling as processors are
+ * added.
+ *
+ * Each processor owns every cell of its block.  Before each generation it
+ * sends the cells along its four edges and in its four corners to the eight
+ * processors around it, and receives theirs as ghost cells, so that its own
+ * cells see every neighbor they have.  Afterwards the ghosts, along with any
+ * cells born outside of the block, are dropped.
+ * @author Alex Maskovyak
+ *
+ */
+public class BlockCommGameOfLifeSimulator extends SequentialGameOfLifeSimulator {
+
+	//
+	// Private member variables
+	//
+
+	// constants
+	protected static final int MASTERRANK = 0;
+	protected static final int NON_NEIGHBOR = -1;
+	protected static final int DISTRIBUTE_TAG = 8;
+
+	// the eight directions to the neighboring blocks, opposite directions
+	// sitting at mirrored indices, direction 7 - d opposing direction d
+	protected static final int DIRECTIONS = 8;
+	protected static final int[] DIRECTION_X_OFFSETS =
+		ConwayCellNeighborhood.NEIGHBOR_X_OFFSETS;
+	protected static final int[] DIRECTION_Y_OFFSETS =
+		ConwayCellNeighborhood.NEIGHBOR_Y_OFFSETS;
+
+	protected Comm commWorld;
+	protected int numProcessors;
+	protected int processorRank;
+
+	// the processor grid, ranks numbered across each row of blocks
+	protected int rankColumns;
+	protected int rankRows;
+	protected int rankColumn;
+	protected int rankRow;
+
+	// x and y extents of every column and row of blocks
+	protected Range[] columnRanges;
+	protected Range[] rowRanges;
+
+	// our block, bounds inclusive
+	protected int blockMinX;
+	protected int blockMaxX;
+	protected int blockMinY;
+	protected int blockMaxY;
+
+	// neighboring processor in each direction, or NON_NEIGHBOR
+	protected int[] neighborRanks;
+
+	// our cells bound for each neighbor, and a pooled buffer for theirs
+	protected static final int CELL_SLOT = 0;
+	protected List<List<Cell>> halos;
+	protected MessageBufferPool messageBuffers;
+
+	// sends still in flight, waited on before the cells they hold change
+	protected List<CommRequest> pendingSends;
+	protected CommStatus receiveStatus;
+
+
+	/**
+	 * Constructor.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded.
+	 * @param commWorld Communicator holding every processor.
+	 * @param cellsFile File containing cells for simulation, read by the
+	 * master.
+	 */
+	public BlockCommGameOfLifeSimulator(
+			CellLifeRules rules,
+			CellNeighborhood neighborhood,
+			Comm commWorld,
+			File cellsFile)
+	{
+		// call superconstructor
+		super(new ArrayList<Cell>(), rules, neighborhood);
+
+		Rectangle bounds = this.neighborhood.getBounds();
+		if (bounds == null) {
+			throw new IllegalArgumentException(
+					"BlockCommGameOfLifeSimulator requires a bounded neighborhood.");
+		}
+
+		// set communication values
+		this.commWorld = commWorld;
+		this.processorRank = this.commWorld.rank();
+		this.numProcessors = this.commWorld.size();
+
+		// lay the processors out over the world
+		this.assignBlocks(bounds);
+		this.assignNeighborRanks();
+
+		// set halo stores
+		this.halos = new ArrayList<List<Cell>>(DIRECTIONS);
+		for (int direction = 0; direction < DIRECTIONS; ++direction) {
+			this.halos.add(new ArrayList<Cell>());
+		}
+		this.messageBuffers = new MessageBufferPool(1);
+		this.pendingSends = new ArrayList<CommRequest>();
+
+		// distribute information
+		if (DistributedCellLoader.isParallelLoad()) {
+			this.loadInParallel(cellsFile);
+		}
+		else if (this.processorRank == MASTERRANK) {
+			this.distributeDataToWorkers(GameOfLifeFileIO.getLiveCells(cellsFile));
+		}
+		else {
+			this.receiveDataFromMaster();
+		}
+	}
+
+	/**
+	 * Lays the processors out as a grid of blocks, choosing the grid whose
+	 * blocks have the shortest perimeter.  Side effects: defines the rank
+	 * grid, the column and row ranges, and this processor's block.
+	 * @param bounds Bounds of the world.
+	 */
+	protected void assignBlocks(Rectangle bounds) {
+		int width = bounds.width;
+		int height = bounds.height;
+
+		// every factorization of the processor count which leaves each block
+		// at least a cell on a side
+		double bestPerimeter = Double.MAX_VALUE;
+		for (int columns = 1; columns <= this.numProcessors; ++columns) {
+			if (this.numProcessors % columns != 0) {
+				continue;
+			}
+			int rows = this.numProcessors / columns;
+			if (columns > width || rows > height) {
+				continue;
+			}
+
+			double perimeter = (double)width / columns + (double)height / rows;
+			if (perimeter < bestPerimeter) {
+				bestPerimeter = perimeter;
+				this.rankColumns = columns;
+				this.rankRows = rows;
+			}
+		}
+		if (bestPerimeter == Double.MAX_VALUE) {
+			throw new IllegalArgumentException(
+					"Cannot divide a " + width + "x" + height + " world among " +
+					this.numProcessors + " processors.");
+		}
+
+		this.rankColumn = this.processorRank % this.rankColumns;
+		this.rankRow = this.processorRank / this.rankColumns;
+
+		this.columnRanges =
+			new Range(bounds.x, bounds.x + width - 1).subranges(this.rankColumns);
+		this.rowRanges =
+			new Range(bounds.y, bounds.y + height - 1).subranges(this.rankRows);
+
+		this.blockMinX = this.columnRanges[this.rankColumn].lb();
+		this.blockMaxX = this.columnRanges[this.rankColumn].ub();
+		this.blockMinY = this.rowRanges[this.rankRow].lb();
+		this.blockMaxY = this.rowRanges[this.rankRow].ub();
+	}
+
+	/**
+	 * Determines this processor's neighbor in each direction.  Side effects:
+	 * defines neighborRanks.  In a wrapping world the grid wraps as well;
+	 * a processor that would neighbor itself sees its own cells through the
+	 * neighborhood instead, and is left out.
+	 */
+	protected void assignNeighborRanks() {
+		boolean wrapping = this.neighborhood.isWrapping();
+
+		this.neighborRanks = new int[DIRECTIONS];
+		for (int direction = 0; direction < DIRECTIONS; ++direction) {
+			int column = this.rankColumn + DIRECTION_X_OFFSETS[direction];
+			int row = this.rankRow + DIRECTION_Y_OFFSETS[direction];
+
+			if (wrapping) {
+				column = (column + this.rankColumns) % this.rankColumns;
+				row = (row + this.rankRows) % this.rankRows;
+			}
+
+			int rank = NON_NEIGHBOR;
+			if (column >= 0 && column < this.rankColumns &&
+				row >= 0 && row < this.rankRows) {
+				rank = row * this.rankColumns + column;
+			}
+			if (rank == this.processorRank) {
+				rank = NON_NEIGHBOR;
+			}
+			this.neighborRanks[direction] = rank;
+		}
+	}
+
+	/**
+	 * Determines which processor owns the specified cell.
+	 * @param x X coordinate of the cell.
+	 * @param y Y coordinate of the cell.
+	 * @return Rank of the owning processor.
+	 */
+	protected int ownerOf(int x, int y) {
+		int column = 0;
+		while (x > this.columnRanges[column].ub()) {
+			++column;
+		}
+		int row = 0;
+		while (y > this.rowRanges[row].ub()) {
+			++row;
+		}
+		return row * this.rankColumns + column;
+	}
+
+	/**
+	 * Every processor reads its share of the file, then trades the cells to
+	 * the processors whose blocks they lie in.
+	 * @param cellsFile File containing cells for simulation.
+	 */
+	protected void loadInParallel(File cellsFile) {
+		DistributedCellLoader loader = new DistributedCellLoader(this.commWorld, cellsFile);
+
+		List<List<Cell>> blocks = new ArrayList<List<Cell>>(this.numProcessors);
+		for (int rank = 0; rank < this.numProcessors; ++rank) {
+			blocks.add(new ArrayList<Cell>());
+		}
+
+		for (Cell c : loader.readShare()) {
+			if (this.neighborhood.isResident(c)) {
+				blocks.get(this.ownerOf(c.x, c.y)).add(c);
+			}
+		}
+
+		try {
+			this.addLivingCells(loader.exchange(blocks));
+		}
+		catch (IOException e) {
+			System.out.println("Processor: " + this.processorRank + " could not " +
+					"exchange loaded cells");
+		}
+	}
+
+	/**
+	 * Master Processor method to send each Worker Processor the living cells
+	 * of its block.
+	 * @param livingCells List of cells to distribute.
+	 */
+	public void distributeDataToWorkers(List<Cell> livingCells) {
+		List<List<Cell>> blocks = new ArrayList<List<Cell>>(this.numProcessors);
+		for (int rank = 0; rank < this.numProcessors; ++rank) {
+			blocks.add(new ArrayList<Cell>());
+		}
+
+		for (Cell c : livingCells) {
+			if (this.neighborhood.isResident(c)) {
+				blocks.get(this.ownerOf(c.x, c.y)).add(c);
+			}
+		}
+
+		for (int rank = 0; rank < this.numProcessors; ++rank) {
+			if (rank == MASTERRANK) {
+				this.addLivingCells(blocks.get(rank));
+			}
+			else {
+				this.sendLiveCells(rank, DISTRIBUTE_TAG, blocks.get(rank));
+			}
+		}
+		this.waitForSends();
+	}
+
+	/**
+	 * Worker Processor method to receive the living cells of its block from
+	 * the Master Processor.
+	 */
+	public void receiveDataFromMaster() {
+		ObjectBuf<Cell> livingCellsToReceive = this.receiveLiveCells(MASTERRANK, DISTRIBUTE_TAG);
+		if (livingCellsToReceive == null) {
+			System.out.println("Processor: " + this.processorRank + " could not receive data");
+			return;
+		}
+
+		for (int i = 0; i < this.receiveStatus.length; i++) {
+			this.addLivingCell(livingCellsToReceive.get(i));
+		}
+		this.messageBuffers.releaseCells(CELL_SLOT, this.receiveStatus.length);
+	}
+
+	/**
+	 * Receives a message of live cells from the specified processor, its
+	 * length first so that the pooled buffer only grows as needed.  The
+	 * buffer holds the cells until the next receive.
+	 * @param rank Processor to receive from.
+	 * @param tag Tag the cells are sent with.
+	 * @return Buffer holding the cells, or null if the receive failed.
+	 */
+	protected ObjectBuf<Cell> receiveLiveCells(int rank, int tag) {
+		try {
+			IntegerBuf length = IntegerBuf.buffer();
+			this.commWorld.receive(rank, tag, length);
+
+			ObjectBuf<Cell> liveCells = ObjectBuf.buffer(
+					this.messageBuffers.cells(CELL_SLOT, length.get(0)));
+			this.receiveStatus = this.commWorld.receive(rank, tag, liveCells);
+			return liveCells;
+		}
+		catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Sends the specified list of live cells to the processor with the given
+	 * rank, preceded by their number.  The sends are left in flight, so that
+	 * every neighbor can send before any receives; waitForSends must be
+	 * called before the cells change.
+	 * @param rank Processor who is to receive the cells.
+	 * @param tag Tag with which to send the cells.
+	 * @param liveCells Cells to send.
+	 */
+	protected void sendLiveCells(int rank, int tag, List<Cell> liveCells) {
+		// fail fast
+		if (rank == NON_NEIGHBOR) {
+			return;
+		}
+
+		ObjectBuf<Cell> cellBuffer =
+			ObjectBuf.buffer(liveCells.toArray(new Cell[liveCells.size()]));
+		CommRequest lengthRequest = new CommRequest();
+		CommRequest cellRequest = new CommRequest();
+
+		try {
+			this.commWorld.send(rank, tag, IntegerBuf.buffer(liveCells.size()), lengthRequest);
+			this.pendingSends.add(lengthRequest);
+			this.commWorld.send(rank, tag, cellBuffer, cellRequest);
+			this.pendingSends.add(cellRequest);
+		}
+		catch (IOException e) {
+			System.out.println("Processor: " + this.processorRank + " could not " +
+					"send to Processor: " + rank);
+		}
+	}
+
+	/**
+	 * Waits for every send left in flight by sendLiveCells to finish.
+	 */
+	protected void waitForSends() {
+		for (CommRequest request : this.pendingSends) {
+			try {
+				request.waitForFinish();
+			}
+			catch (IOException e) {
+				System.out.println("Processor: " + this.processorRank + " could not " +
+						"finish a send");
+			}
+		}
+		this.pendingSends.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see GameOfLifeSimulator#performSimulation()
+	 */
+	public void performSimulation() throws Exception {
+		// trade halos with our neighbors
+		this.exchangeHalos();
+
+		// simulate with all information
+		this.simulateLocally();
+
+		// drop what our neighbors are responsible for
+		this.discardForeignCells();
+	}
+
+	/**
+	 * Sends our edge and corner cells to the neighbors they border and adds
+	 * theirs to our living cells.
+	 */
+	protected void exchangeHalos() {
+		this.updateHalos();
+
+		// the halo bound in each direction goes out under that direction's tag
+		for (int direction = 0; direction < DIRECTIONS; ++direction) {
+			this.sendLiveCells(
+					this.neighborRanks[direction],
+					direction,
+					this.halos.get(direction));
+		}
+
+		// so the cells heading in a direction come from the opposite side
+		for (int direction = 0; direction < DIRECTIONS; ++direction) {
+			int rank = this.neighborRanks[DIRECTIONS - 1 - direction];
+			if (rank == NON_NEIGHBOR) {
+				continue;
+			}
+
+			ObjectBuf<Cell> ghostCells = this.receiveLiveCells(rank, direction);
+			if (ghostCells == null) {
+				System.out.printf(
+						"Processor: %d could not receive halo from Processor: %d\n",
+						this.processorRank, rank);
+				continue;
+			}
+
+			for (int i = 0; i < this.receiveStatus.length; i++) {
+				this.addLivingCell(ghostCells.get(i));
+			}
+			this.messageBuffers.releaseCells(CELL_SLOT, this.receiveStatus.length);
+		}
+
+		// our halos must be out before their cells are simulated
+		this.waitForSends();
+	}
+
+	/**
+	 * Sorts our cells along the edges of the block into the halos of the
+	 * neighbors they border; a corner cell borders three.
+	 */
+	protected void updateHalos() {
+		for (List<Cell> halo : this.halos) {
+			halo.clear();
+		}
+
+		for (Cell c : this.livingCells.keySet()) {
+			// interior cells border no one
+			if (c.x != this.blockMinX && c.x != this.blockMaxX &&
+				c.y != this.blockMinY && c.y != this.blockMaxY) {
+				continue;
+			}
+
+			for (int direction = 0; direction < DIRECTIONS; ++direction) {
+				int dx = DIRECTION_X_OFFSETS[direction];
+				int dy = DIRECTION_Y_OFFSETS[direction];
+
+				// a one cell wide block sits on both of its sides
+				boolean facesX = (dx == 0) ||
+					(dx == -1 && c.x == this.blockMinX) || (dx == 1 && c.x == this.blockMaxX);
+				boolean facesY = (dy == 0) ||
+					(dy == -1 && c.y == this.blockMinY) || (dy == 1 && c.y == this.blockMaxY);
+				if (facesX && facesY && this.neighborRanks[direction] != NON_NEIGHBOR) {
+					this.halos.get(direction).add(c);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the next generation of our living cells, ghost cells
+	 * included.
+	 * @throws Exception
+	 */
+	protected void simulateLocally() throws Exception {
+		super.performSimulation();
+	}
+
+	/**
+	 * Removes the ghost cells received from our neighbors, along with any
+	 * cells born outside of our block.
+	 */
+	protected void discardForeignCells() {
+		Iterator<Cell> cells = this.livingCells.keySet().iterator();
+		while (cells.hasNext()) {
+			Cell c = cells.next();
+			if (c.x < this.blockMinX || c.x > this.blockMaxX ||
+				c.y < this.blockMinY || c.y > this.blockMaxY) {
+				cells.remove();
+			}
+		}
+	}
+
+	/**
+	 * Retrieves this Processor's Rank relative to the PJ Comm World.
+	 */
+	public int getProcessorRank() {
+		return this.processorRank;
+	}
+
+	/**
+	 * Retrieves the number of processors.
+	 */
+	public int getNumProcessors() {
+		return this.numProcessors;
+	}
+
+	/**
+	 * Retrieves the bounds of this processor's block.
+	 * @return Block owned by this processor.
+	 */
+	public Rectangle getBlockBounds() {
+		return new Rectangle(
+				this.blockMinX,
+				this.blockMinY,
+				this.blockMaxX - this.blockMinX + 1,
+				this.blockMaxY - this.blockMinY + 1);
+	}
+}
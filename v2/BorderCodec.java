@@ -0,0 +1,237 @@
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * BorderCodec packs the living cells of a strip border into an int message,
+ * so that borders travel as an IntegerBuf rather than as serialized Cell
+ * objects.  A border is a few columns of cells, each a full world high; every
+ * cell in it has an index, column by column, from which it is rebuilt.
+ *
+ * Each message is encoded whichever way is shorter.  A dense border is sent
+ * as a bitset over every index in the strip, a sparse one as the gaps between
+ * the sorted indices of its living cells.  The encoding is named in the
+ * message header, so the receiver can post its receive before knowing which
+ * arrives.
+ *
+ * A message holds either a whole border or only the cells which changed
+ * since the last message, for a receiver keeping a copy of the border; the
+ * header says which.
+ * @author Alex Maskovyak
+ *
+ */
+public class BorderCodec {
+
+	//
+	// Private member variables
+	//
+
+	// message header: encoding, contents, first column, cell count
+	public static final int BITSET = 1;
+	public static final int DELTA = 2;
+	public static final int FULL = 0;
+	public static final int CHANGES = 1;
+	public static final int HEADER_LENGTH = 4;
+
+	protected static final int ENCODING = 0;
+	protected static final int CONTENTS = 1;
+	protected static final int FIRST_COLUMN = 2;
+	protected static final int CELL_COUNT = 3;
+
+	// bits per word of a bitset
+	protected static final int WORD_BITS = 32;
+
+	// the strip: its columns run along y, its rows along x
+	protected int minX;
+	protected int rows;
+	protected int columns;
+	protected int stripCells;
+
+	// sorted cell indices of the border being encoded
+	protected int[] indices;
+
+
+	/**
+	 * Constructor.
+	 * @param minX Smallest x coordinate of the world.
+	 * @param rows Height of the world along x.
+	 * @param columns Number of columns in a border.
+	 */
+	public BorderCodec(int minX, int rows, int columns) {
+		this.minX = minX;
+		this.rows = rows;
+		this.columns = columns;
+		this.stripCells = rows * columns;
+		this.indices = new int[0];
+	}
+
+	/**
+	 * Determines the longest message a border can encode to.
+	 * @return Length of the longest message.
+	 */
+	public int maxEncodedLength() {
+		return HEADER_LENGTH + this.bitsetLength();
+	}
+
+	/**
+	 * Determines the length of a bitset payload.
+	 * @return Words in a bitset over the strip.
+	 */
+	protected int bitsetLength() {
+		return (this.stripCells + WORD_BITS - 1) / WORD_BITS;
+	}
+
+	/**
+	 * Encodes a whole border, choosing the shorter encoding.
+	 * @param cells Living cells of the border.
+	 * @param firstColumn Y coordinate of the border's first column.
+	 * @param message Array to encode into, at least maxEncodedLength long.
+	 * @return Length of the message.
+	 */
+	public int encode(List<Cell> cells, int firstColumn, int[] message) {
+		return this.encode(cells, firstColumn, FULL, message);
+	}
+
+	/**
+	 * Encodes the changes to a border, the cells born into or died out of it
+	 * since the last message, choosing the shorter encoding.
+	 * @param changedCells Cells whose state changed.
+	 * @param firstColumn Y coordinate of the border's first column.
+	 * @param message Array to encode into, at least maxEncodedLength long.
+	 * @return Length of the message.
+	 */
+	public int encodeChanges(List<Cell> changedCells, int firstColumn, int[] message) {
+		return this.encode(changedCells, firstColumn, CHANGES, message);
+	}
+
+	/**
+	 * Determines whether a message holds only the changes to a border.
+	 * @param message Message holding a border.
+	 * @return True if the decoded cells changed state, false if they are the
+	 * whole border.
+	 */
+	public static boolean isChanges(int[] message) {
+		return message[CONTENTS] == CHANGES;
+	}
+
+	/**
+	 * Encodes cells of a border, choosing the shorter encoding.
+	 * @param cells Cells to encode.
+	 * @param firstColumn Y coordinate of the border's first column.
+	 * @param contents FULL or CHANGES.
+	 * @param message Array to encode into.
+	 * @return Length of the message.
+	 */
+	protected int encode(List<Cell> cells, int firstColumn, int contents, int[] message) {
+		int count = cells.size();
+		if (this.indices.length < count) {
+			this.indices = new int[count + count / 2];
+		}
+
+		for (int i = 0; i < count; ++i) {
+			Cell c = cells.get(i);
+			int column = c.y - firstColumn;
+			int row = c.x - this.minX;
+			if (column < 0 || column >= this.columns || row < 0 || row >= this.rows) {
+				throw new IllegalArgumentException(
+						"Cell " + c + " lies outside of the border at column " + firstColumn);
+			}
+			this.indices[i] = column * this.rows + row;
+		}
+
+		int length;
+		if (count < this.bitsetLength()) {
+			length = this.encodeDeltas(count, message);
+		}
+		else {
+			length = this.encodeBitset(count, message);
+		}
+
+		message[CONTENTS] = contents;
+		message[FIRST_COLUMN] = firstColumn;
+		message[CELL_COUNT] = count;
+		return length;
+	}
+
+	/**
+	 * Encodes the indices as a bitset.
+	 * @param count Number of indices.
+	 * @param message Array to encode into.
+	 * @return Length of the message.
+	 */
+	protected int encodeBitset(int count, int[] message) {
+		int length = HEADER_LENGTH + this.bitsetLength();
+		Arrays.fill(message, HEADER_LENGTH, length, 0);
+		message[ENCODING] = BITSET;
+
+		for (int i = 0; i < count; ++i) {
+			int index = this.indices[i];
+			message[HEADER_LENGTH + index / WORD_BITS] |= 1 << (index % WORD_BITS);
+		}
+		return length;
+	}
+
+	/**
+	 * Encodes the indices as gaps between sorted indices.
+	 * @param count Number of indices.
+	 * @param message Array to encode into.
+	 * @return Length of the message.
+	 */
+	protected int encodeDeltas(int count, int[] message) {
+		Arrays.sort(this.indices, 0, count);
+
+		message[ENCODING] = DELTA;
+
+		int previous = 0;
+		for (int i = 0; i < count; ++i) {
+			message[HEADER_LENGTH + i] = this.indices[i] - previous;
+			previous = this.indices[i];
+		}
+		return HEADER_LENGTH + count;
+	}
+
+	/**
+	 * Decodes a border, or its changes.
+	 * @param message Message holding the border, possibly followed by
+	 * unused space.
+	 * @param cells List to add the encoded cells to.
+	 */
+	public void decode(int[] message, List<Cell> cells) {
+		int firstColumn = message[FIRST_COLUMN];
+		int count = message[CELL_COUNT];
+
+		switch (message[ENCODING]) {
+			case BITSET:
+				int words = this.bitsetLength();
+				for (int word = 0; word < words; ++word) {
+					int bits = message[HEADER_LENGTH + word];
+					while (bits != 0) {
+						int index = word * WORD_BITS + Integer.numberOfTrailingZeros(bits);
+						cells.add(this.cellAt(index, firstColumn));
+						bits &= bits - 1;
+					}
+				}
+				break;
+			case DELTA:
+				int index = 0;
+				for (int i = 0; i < count; ++i) {
+					index += message[HEADER_LENGTH + i];
+					cells.add(this.cellAt(index, firstColumn));
+				}
+				break;
+			default:
+				throw new IllegalArgumentException(
+						"Unknown border encoding: " + message[ENCODING]);
+		}
+	}
+
+	/**
+	 * Rebuilds the cell at a strip index.
+	 * @param index Index of the cell within the strip.
+	 * @param firstColumn Y coordinate of the border's first column.
+	 * @return Cell at that index.
+	 */
+	protected Cell cellAt(int index, int firstColumn) {
+		return new Cell(this.minX + index % this.rows, firstColumn + index / this.rows);
+	}
+}
@@ -70,7 +70,18 @@ public class Cell implements java.io.Serializable, Comparable<Cell> {
 	 * Override Java's default hash code.
 	 */
 	public int hashCode() {
-		return (HASHFACTOR * this.x) + this.y;
+		return hashCode(this.x, this.y);
+	}
+	
+	/**
+	 * Computes the hash code of the cell at the specified coordinates, for
+	 * lookups which do not construct a cell.
+	 * @param x X coordinate value.
+	 * @param y Y coordinate value.
+	 * @return Hash code of a cell at x, y.
+	 */
+	static int hashCode(int x, int y) {
+		return (HASHFACTOR * x) + y;
 	}
 	
 	/**
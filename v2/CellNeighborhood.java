@@ -16,6 +16,16 @@ public interface CellNeighborhood {
 	 */
 	public abstract List<Cell> getNeighborIdentities(Cell home);
 	
+	/**
+	 * Passes the coordinates of each neighbor of the specified location to
+	 * the visitor, in the same order and with the same residency filtering as
+	 * getNeighborIdentities, but without creating any objects.
+	 * @param x X coordinate of the cell whose neighbors are visited.
+	 * @param y Y coordinate of the cell whose neighbors are visited.
+	 * @param visitor Receives each neighbor's coordinates.
+	 */
+	public abstract void visitNeighbors(int x, int y, NeighborVisitor visitor);
+	
 	/**
 	 * Determines whether a given cell can be found inside of the neighborhood.
 	 * @param cell Cell for which to determine residency.
@@ -24,6 +34,13 @@ public interface CellNeighborhood {
 	 */
 	public abstract boolean isResident(Cell cell);
 	
+	/**
+	 * Determines whether the neighborhood wraps around at its bounds, making
+	 * cells on opposite edges neighbors of one another.
+	 * @return True if the world is a torus, false otherwise.
+	 */
+	public abstract boolean isWrapping();
+	
 	/**
 	 * Reveals the internal boundary that exist for this neighborhood if any.
 	 * @return A rectangle containing the enforced boundary for cells in the 
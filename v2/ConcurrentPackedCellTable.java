@@ -0,0 +1,301 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table of packed cell coordinates that many threads may
+ * add to at once.  A thread claims an empty slot with a compare-and-set of
+ * its key, and values are changed with atomic adds, so no count is ever lost
+ * and no locks are taken.  The table can't grow while threads are adding to
+ * it; ensureCapacity() must be called beforehand, from a single thread, with
+ * an upper bound on the number of keys.  Claimed slots are recorded in an
+ * index list so entries can be walked, and emptied, in parallel chunks.
+ * Key EMPTY, the packed form of (Integer.MIN_VALUE, 0), marks free slots and
+ * can't be stored.
+ * @author Alex Maskovyak
+ *
+ */
+public class ConcurrentPackedCellTable {
+
+	//
+	// public fields
+	//
+	public static final long EMPTY = Long.MIN_VALUE;
+
+	//
+	// private fields
+	//
+	private static final int DEFAULT_CAPACITY = 1 << 10;
+	private static final float MAX_LOAD = 0.5f;
+
+	private static final VarHandle KEYS =
+		MethodHandles.arrayElementVarHandle(long[].class);
+	private static final VarHandle VALUES =
+		MethodHandles.arrayElementVarHandle(int[].class);
+	private static final VarHandle SIZE;
+
+	static {
+		try {
+			SIZE = MethodHandles.lookup().findVarHandle(
+					ConcurrentPackedCellTable.class, "size", int.class);
+		}
+		catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	// slot storage
+	private long[] keys;
+	private int[] values;
+	private int mask;
+
+	// slots claimed since the last clear, in order of claiming
+	private int[] used;
+	private int size;
+
+
+	/**
+	 * Default constructor.
+	 */
+	public ConcurrentPackedCellTable() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor.
+	 * @param expectedCells Number of cells expected to be stored at once.
+	 */
+	public ConcurrentPackedCellTable(int expectedCells) {
+		this.allocate(capacityFor(expectedCells));
+	}
+
+	/**
+	 * Grows the table, if needed, so it can hold the specified number of
+	 * keys.  Not safe to call while other threads use the table.
+	 * @param expectedCells Most keys the table will hold before it is next
+	 * 			cleared.
+	 */
+	public void ensureCapacity(int expectedCells) {
+		int capacity = capacityFor(expectedCells);
+		if (capacity > this.keys.length) {
+			this.rehash(capacity);
+		}
+	}
+
+	/**
+	 * Atomically adds the specified amount to the value stored for the key,
+	 * claiming a slot with a starting value of zero if the key is not yet
+	 * present.
+	 * @param key Packed cell coordinates.
+	 * @param amount Amount to add.
+	 * @return Value stored for the key before the add.
+	 */
+	public int add(long key, int amount) {
+		int slot = this.claim(key);
+		return (int)VALUES.getAndAdd(this.values, slot, amount);
+	}
+
+	/**
+	 * Atomically stores the value for the specified key, claiming a slot if
+	 * the key is not yet present.
+	 * @param key Packed cell coordinates.
+	 * @param value Value to store.
+	 */
+	public void put(long key, int value) {
+		int slot = this.claim(key);
+		VALUES.setVolatile(this.values, slot, value);
+	}
+
+	/**
+	 * Retrieves the value stored for the specified key.
+	 * @param key Packed cell coordinates.
+	 * @return Value stored for the key, zero if the key is not present.
+	 */
+	public int get(long key) {
+		int slot = this.find(key);
+		return (slot < 0) ? 0 : (int)VALUES.getVolatile(this.values, slot);
+	}
+
+	/**
+	 * Determines whether the key has been claimed since the last clear.
+	 * @param key Packed cell coordinates.
+	 * @return True if the key is present, false otherwise.
+	 */
+	public boolean containsKey(long key) {
+		return this.find(key) >= 0;
+	}
+
+	/**
+	 * Empties the table.  Not safe to call while other threads use the
+	 * table.
+	 */
+	public void clear() {
+		this.emptyEntries(0, this.size - 1);
+		this.resetSize();
+	}
+
+	/**
+	 * Frees the slots of a range of entries.  Threads may empty disjoint
+	 * ranges at once, as long as nobody is looking up keys; once every entry
+	 * is empty, resetSize() completes the clear.
+	 * @param first Index of the first entry to empty.
+	 * @param last Index of the last entry to empty, inclusive.
+	 */
+	public void emptyEntries(int first, int last) {
+		for (int i = first; i <= last; ++i) {
+			int slot = this.used[i];
+			this.keys[slot] = EMPTY;
+			this.values[slot] = 0;
+		}
+	}
+
+	/**
+	 * Forgets every entry after all of them were emptied with emptyEntries().
+	 */
+	public void resetSize() {
+		this.size = 0;
+	}
+
+	/**
+	 * Determines how many keys were claimed since the last clear.
+	 * @return Number of stored keys.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Retrieves the key of the n-th entry claimed since the last clear.
+	 * @param index Value between 0 and size() - 1.
+	 * @return Packed cell coordinates.
+	 */
+	public long keyAt(int index) {
+		return this.keys[this.used[index]];
+	}
+
+	/**
+	 * Retrieves the value of the n-th entry claimed since the last clear.
+	 * @param index Value between 0 and size() - 1.
+	 * @return Value stored for that entry.
+	 */
+	public int valueAt(int index) {
+		return (int)VALUES.getVolatile(this.values, this.used[index]);
+	}
+
+	/**
+	 * Locates the slot for the key, claiming one if needed.
+	 * @param key Packed cell coordinates.
+	 * @return Slot holding the key.
+	 * @throws IllegalArgumentException If the key is EMPTY.
+	 * @throws IllegalStateException If the table holds more keys than it was
+	 * 			sized for.
+	 */
+	private int claim(long key) {
+		if (key == EMPTY) {
+			throw new IllegalArgumentException("The EMPTY key can't be stored.");
+		}
+
+		int slot = PackedCellTable.hash(key) & this.mask;
+		for (int probes = 0; probes <= this.mask; ++probes) {
+			long current = (long)KEYS.getVolatile(this.keys, slot);
+			if (current == key) {
+				return slot;
+			}
+
+			if (current == EMPTY) {
+				// whoever swaps in their key first owns the slot
+				current = (long)KEYS.compareAndExchange(this.keys, slot, EMPTY, key);
+				if (current == EMPTY) {
+					this.record(slot);
+					return slot;
+				}
+				if (current == key) {
+					return slot;
+				}
+			}
+
+			slot = (slot + 1) & this.mask;
+		}
+
+		throw new IllegalStateException(
+				"ConcurrentPackedCellTable is full, ensureCapacity() was too small.");
+	}
+
+	/**
+	 * Appends a newly claimed slot to the entry list.
+	 * @param slot Slot just claimed.
+	 */
+	private void record(int slot) {
+		int index = (int)SIZE.getAndAdd(this, 1);
+		if (index >= this.used.length) {
+			throw new IllegalStateException(
+					"ConcurrentPackedCellTable is full, ensureCapacity() was too small.");
+		}
+		this.used[index] = slot;
+	}
+
+	/**
+	 * Locates the slot for the key.
+	 * @param key Packed cell coordinates.
+	 * @return Slot holding the key, -1 if the key is not present.
+	 */
+	private int find(long key) {
+		int slot = PackedCellTable.hash(key) & this.mask;
+		for (int probes = 0; probes <= this.mask; ++probes) {
+			long current = (long)KEYS.getVolatile(this.keys, slot);
+			if (current == key) {
+				return slot;
+			}
+			if (current == EMPTY) {
+				return -1;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Moves the entries into larger storage, preserving their order.
+	 * @param capacity New number of slots, a power of two.
+	 */
+	private void rehash(int capacity) {
+		long[] oldKeys = this.keys;
+		int[] oldValues = this.values;
+		int[] oldUsed = this.used;
+		int oldSize = this.size;
+
+		this.allocate(capacity);
+
+		for (int i = 0; i < oldSize; ++i) {
+			int oldSlot = oldUsed[i];
+			int slot = this.claim(oldKeys[oldSlot]);
+			this.values[slot] = oldValues[oldSlot];
+		}
+	}
+
+	/**
+	 * Allocates empty storage.
+	 * @param capacity Number of slots, a power of two.
+	 */
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		Arrays.fill(this.keys, EMPTY);
+		this.values = new int[capacity];
+		this.used = new int[(int)(capacity * MAX_LOAD) + 1];
+		this.mask = capacity - 1;
+		this.size = 0;
+	}
+
+	/**
+	 * Determines the number of slots needed for the specified number of keys.
+	 * @param expectedCells Number of keys to hold.
+	 * @return Power of two keeping the table under its maximum load.
+	 */
+	private static int capacityFor(int expectedCells) {
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity * MAX_LOAD < expectedCells) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+}
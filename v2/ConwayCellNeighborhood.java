@@ -17,6 +17,14 @@ public class ConwayCellNeighborhood implements CellNeighborhood {
 
 	protected Rectangle bounds = null;
 	
+	// bounds as primitives, cells strictly inside of them have all neighbors
+	// resident and are visited without checks
+	protected int xMin, xMax, yMin, yMax;
+	
+	// neighbor offsets in the order getNeighborIdentities produces them
+	public static final int[] NEIGHBOR_X_OFFSETS = { -1, -1, -1,  0, 0,  1, 1, 1 };
+	public static final int[] NEIGHBOR_Y_OFFSETS = { -1,  0,  1, -1, 1, -1, 0, 1 };
+	
 	/**
 	 * Default constructor. Game world has no boundaries.
 	 */
@@ -46,6 +54,11 @@ public class ConwayCellNeighborhood implements CellNeighborhood {
 	public ConwayCellNeighborhood(Rectangle bounds) {
 		this.bounds = bounds;
 		this.hasBounds = true;
+		
+		this.xMin = bounds.x;
+		this.xMax = bounds.x + bounds.width;
+		this.yMin = bounds.y;
+		this.yMax = bounds.y + bounds.height;
 	}
 
 	
@@ -93,6 +106,36 @@ public class ConwayCellNeighborhood implements CellNeighborhood {
 		return neighborList;
 	}
 
+	/* (non-Javadoc)
+	 * @see CellNeighborhood#visitNeighbors(int, int, NeighborVisitor)
+	 */
+	public void visitNeighbors(int x, int y, NeighborVisitor visitor) {
+		int[] dx = NEIGHBOR_X_OFFSETS;
+		int[] dy = NEIGHBOR_Y_OFFSETS;
+		
+		// unbounded worlds and interior cells need no residency checks
+		if (!this.hasBounds ||
+				(x > this.xMin && x < this.xMax - 1 &&
+				 y > this.yMin && y < this.yMax - 1))
+		{
+			for (int i = 0; i < dx.length; ++i) {
+				visitor.visit(x + dx[i], y + dy[i]);
+			}
+			return;
+		}
+		
+		// edge cells, skip neighbors outside of the game world
+		for (int i = 0; i < dx.length; ++i) {
+			int xNew = x + dx[i];
+			int yNew = y + dy[i];
+			if (xNew >= this.xMin && xNew < this.xMax &&
+					yNew >= this.yMin && yNew < this.yMax)
+			{
+				visitor.visit(xNew, yNew);
+			}
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see CellNeighborhood#isResident()
 	 */	
@@ -101,6 +144,13 @@ public class ConwayCellNeighborhood implements CellNeighborhood {
 				(this.hasBounds && this.bounds.contains(cell.x, cell.y)) );
 	}
 
+	/* (non-Javadoc)
+	 * @see CellNeighborhood#isWrapping()
+	 */	
+	public boolean isWrapping() {
+		return false;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see CellNeighborhood#getBounds()
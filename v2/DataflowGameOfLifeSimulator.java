@@ -0,0 +1,400 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+
+/**
+ * DataflowGameOfLifeSimulator steps a bounded BitGridGameOfLifeSimulator
+ * board in 64x64 cell tiles with no barrier between generations.  A tile may
+ * compute generation g + 1 as soon as it and its eight neighbors have
+ * published generation g, so busy regions of the board fall behind quiet ones
+ * by a few generations rather than holding up every tile at a barrier.  Only
+ * a run of several generations gains from this, so the simulator is a
+ * MultiStepGameOfLifeSimulator.
+ *
+ * The two boards are indexed by generation parity.  Waiting for the
+ * neighbors to publish g also means they have stopped reading generation
+ * g - 1, so tiles write over it safely, and neighboring tiles are never more
+ * than one generation apart.  Each tile runs as a task on its own virtual
+ * thread, unless an executor is given, claimed for a generation by
+ * compare-and-set so that exactly one task computes it, and keeps going for
+ * as long as it stays ready.  Tiles whose
+ * neighborhood is empty are published without being computed.
+ * @author Alex Maskovyak
+ *
+ */
+public class DataflowGameOfLifeSimulator extends BitGridGameOfLifeSimulator
+	implements MultiStepGameOfLifeSimulator {
+
+	//
+	// Private member variables
+	//
+	public static final int TILE_SIZE = 64;
+
+	protected Executor executor;
+
+	// tiles are one word wide and TILE_SIZE rows tall, in row major order
+	protected int tileRows;
+	protected int tileColumns;
+	protected int[][] tileNeighbors;
+	protected TileTask[] tasks;
+
+	// live cells of each tile on the current and next boards
+	protected int[] population;
+	protected int[] nextPopulation;
+	protected boolean populationDirty;
+
+	// the state of a run: the generation each tile has published and the
+	// one it is claimed for, both counted from the start of the run
+	protected AtomicIntegerArray published;
+	protected AtomicIntegerArray claimed;
+	protected int targetGeneration;
+	protected AtomicInteger tilesRunning;
+	protected CountDownLatch runFinished;
+	protected volatile Throwable failure;
+
+
+	/**
+	 * Constructor, runs each tile task on a new virtual thread.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded and
+	 * must not wrap.
+	 */
+	public DataflowGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood)
+	{
+		this(liveCells, rules, neighborhood, Executors.newVirtualThreadPerTaskExecutor());
+	}
+
+	/**
+	 * Constructor.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded and
+	 * must not wrap.
+	 * @param executor Executor to run the tile tasks on.
+	 */
+	public DataflowGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood,
+			Executor executor)
+	{
+		super(liveCells, rules, neighborhood);
+
+		// the wrapped borders are a single copy shared by every tile, which
+		// can't be kept for tiles at different generations
+		if (this.wrapping) {
+			throw new IllegalArgumentException(
+					"DataflowGameOfLifeSimulator does not support wrapping neighborhoods.");
+		}
+
+		this.executor = executor;
+
+		this.tileRows = (this.height + TILE_SIZE - 1) / TILE_SIZE;
+		this.tileColumns = this.words;
+		int tileCount = this.tileRows * this.tileColumns;
+
+		this.tileNeighbors = new int[tileCount][];
+		this.tasks = new TileTask[tileCount];
+		for (int tile = 0; tile < tileCount; ++tile) {
+			this.tileNeighbors[tile] = this.neighborsOf(tile);
+			this.tasks[tile] = new TileTask(tile);
+		}
+
+		this.population = new int[tileCount];
+		this.nextPopulation = new int[tileCount];
+		this.populationDirty = true;
+
+		this.published = new AtomicIntegerArray(tileCount);
+		this.claimed = new AtomicIntegerArray(tileCount);
+		this.tilesRunning = new AtomicInteger();
+	}
+
+	/**
+	 * Lists the tiles around a tile.
+	 * @param tile Tile index.
+	 * @return Indices of the up to eight tiles that touch the tile.
+	 */
+	protected int[] neighborsOf(int tile) {
+		int tileRow = tile / this.tileColumns;
+		int tileColumn = tile % this.tileColumns;
+
+		List<Integer> neighbors = new ArrayList<Integer>(8);
+		for (int r = tileRow - 1; r <= tileRow + 1; ++r) {
+			for (int c = tileColumn - 1; c <= tileColumn + 1; ++c) {
+				if ((r != tileRow || c != tileColumn) &&
+					r >= 0 && r < this.tileRows && c >= 0 && c < this.tileColumns) {
+					neighbors.add(r * this.tileColumns + c);
+				}
+			}
+		}
+
+		int[] indices = new int[neighbors.size()];
+		for (int i = 0; i < indices.length; ++i) {
+			indices[i] = neighbors.get(i);
+		}
+		return indices;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#performSimulation()
+	 */
+	public void performSimulation() throws Exception {
+		this.performSimulations(1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see MultiStepGameOfLifeSimulator#performSimulations(int)
+	 */
+	public void performSimulations(int generations) throws Exception {
+		if (generations <= 0) {
+			return;
+		}
+
+		if (this.populationDirty) {
+			this.summarize();
+			this.populationDirty = false;
+		}
+
+		// every tile starts at generation 0 of this run, and is ready
+		int tileCount = this.tasks.length;
+		for (int tile = 0; tile < tileCount; ++tile) {
+			this.published.set(tile, 0);
+			this.claimed.set(tile, 1);
+		}
+		this.targetGeneration = generations;
+		this.tilesRunning.set(tileCount);
+		this.runFinished = new CountDownLatch(1);
+		this.failure = null;
+
+		for (TileTask task : this.tasks) {
+			this.executor.execute(task);
+		}
+		this.runFinished.await();
+
+		if (this.failure != null) {
+			throw new Exception("Tile step failed", this.failure);
+		}
+
+		// an odd run leaves the newest generation on the other board
+		if ((generations & 1) != 0) {
+			this.swapBoards();
+		}
+	}
+
+	/**
+	 * Computes one tile's generations for as long as it stays ready, then
+	 * hands off to whichever neighbors became ready along the way.
+	 */
+	protected class TileTask implements Runnable {
+
+		protected final int tile;
+
+		/**
+		 * Constructor.
+		 * @param tile Index of the tile to compute.
+		 */
+		protected TileTask(int tile) {
+			this.tile = tile;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run() {
+			try {
+				do {
+					int generation = claimed.get(this.tile);
+					stepTile(this.tile, generation);
+					publish(this.tile, generation);
+				}
+				while (tryClaim(this.tile));
+			}
+			catch (Throwable t) {
+				failure = t;
+				runFinished.countDown();
+			}
+		}
+	}
+
+	/**
+	 * Makes a tile's newest generation visible and wakes its neighbors.
+	 * @param tile Tile index.
+	 * @param generation Generation just computed.
+	 */
+	protected void publish(int tile, int generation) {
+		this.published.set(tile, generation);
+
+		if (generation == this.targetGeneration &&
+			this.tilesRunning.decrementAndGet() == 0) {
+			this.runFinished.countDown();
+		}
+
+		for (int neighbor : this.tileNeighbors[tile]) {
+			if (this.tryClaim(neighbor)) {
+				this.executor.execute(this.tasks[neighbor]);
+			}
+		}
+	}
+
+	/**
+	 * Claims a tile's next generation if the tile and all of its neighbors
+	 * have published the one before.  Only one caller wins a claim.
+	 * @param tile Tile index.
+	 * @return True if the caller must now compute the tile.
+	 */
+	protected boolean tryClaim(int tile) {
+		int generation = this.published.get(tile) + 1;
+		if (generation > this.targetGeneration) {
+			return false;
+		}
+
+		for (int neighbor : this.tileNeighbors[tile]) {
+			if (this.published.get(neighbor) < generation - 1) {
+				return false;
+			}
+		}
+
+		return this.claimed.compareAndSet(tile, generation - 1, generation);
+	}
+
+	/**
+	 * Computes a tile of the specified generation from the one before.
+	 * @param tile Tile index.
+	 * @param generation Generation to compute, counted from the start of the
+	 * run.
+	 */
+	protected void stepTile(int tile, int generation) {
+		// generation 0 of the run sits on the current board
+		boolean even = (generation & 1) == 0;
+		long[] src = even ? this.next : this.current;
+		long[] dst = even ? this.current : this.next;
+		int[] srcPopulation = even ? this.nextPopulation : this.population;
+		int[] dstPopulation = even ? this.population : this.nextPopulation;
+
+		int tileRow = tile / this.tileColumns;
+		int column = tile % this.tileColumns;
+		int firstRow = tileRow * TILE_SIZE;
+		int lastRow = Math.min(firstRow + TILE_SIZE, this.height);
+
+		// an empty neighborhood stays empty, and an empty tile needs no
+		// clearing
+		boolean quiet = (srcPopulation[tile] == 0);
+		for (int neighbor : this.tileNeighbors[tile]) {
+			quiet &= (srcPopulation[neighbor] == 0);
+		}
+		if (quiet) {
+			if (dstPopulation[tile] != 0) {
+				for (int row = firstRow; row < lastRow; ++row) {
+					dst[this.rowOffset(row) + column] = 0L;
+				}
+				dstPopulation[tile] = 0;
+			}
+			return;
+		}
+
+		long columnMask = (column == this.words - 1) ? this.lastWordMask : -1L;
+		int count = 0;
+
+		for (int row = firstRow; row < lastRow; ++row) {
+			int offset = this.rowOffset(row) + column;
+			long word = BitLifeKernel.nextWord(
+					src[offset - this.stride - 1], src[offset - this.stride], src[offset - this.stride + 1],
+					src[offset - 1], src[offset], src[offset + 1],
+					src[offset + this.stride - 1], src[offset + this.stride], src[offset + this.stride + 1],
+					this.survivalMask,
+					this.birthMask) & columnMask;
+
+			dst[offset] = word;
+			count += Long.bitCount(word);
+		}
+
+		dstPopulation[tile] = count;
+	}
+
+	/**
+	 * Recounts the live cells of every tile on the current board.
+	 */
+	protected void summarize() {
+		for (int tile = 0; tile < this.tasks.length; ++tile) {
+			int column = tile % this.tileColumns;
+			int firstRow = (tile / this.tileColumns) * TILE_SIZE;
+			int lastRow = Math.min(firstRow + TILE_SIZE, this.height);
+
+			int count = 0;
+			for (int row = firstRow; row < lastRow; ++row) {
+				count += Long.bitCount(this.current[this.rowOffset(row) + column]);
+			}
+			this.population[tile] = count;
+
+			// the next board is unknown, so make sure it is overwritten
+			this.nextPopulation[tile] = 1;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see BitGridGameOfLifeSimulator#swapBoards()
+	 */
+	protected void swapBoards() {
+		super.swapBoards();
+
+		int[] counts = this.population;
+		this.population = this.nextPopulation;
+		this.nextPopulation = counts;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#addLivingCell()
+	 */
+	public void addLivingCell(Cell livingCell) {
+		super.addLivingCell(livingCell);
+		this.populationDirty = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#clearLivingCells()
+	 */
+	public void clearLivingCells() {
+		super.clearLivingCells();
+		this.populationDirty = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#removeLivingCell(Cell)
+	 */
+	public void removeLivingCell(Cell livingCell) {
+		super.removeLivingCell(livingCell);
+		this.populationDirty = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#getLivingCellCount()
+	 */
+	public int getLivingCellCount() {
+		if (this.populationDirty) {
+			return super.getLivingCellCount();
+		}
+
+		int count = 0;
+		for (int tileCount : this.population) {
+			count += tileCount;
+		}
+		return count;
+	}
+}
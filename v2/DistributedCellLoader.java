@@ -0,0 +1,281 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.rit.mp.IntegerBuf;
+import edu.rit.pj.Comm;
+import edu.rit.pj.reduction.IntegerOp;
+
+
+/**
+ * DistributedCellLoader reads a file of live cells on every processor at
+ * once, rather than on the master alone.  Each processor memory maps the file
+ * and parses only its share of the bytes, starting at the first line which
+ * begins in its share and finishing the last line which does; a line
+ * straddling two shares is read by the processor it begins in.  The cells each
+ * processor parsed are then sent on to the processors which own them with an
+ * all-to-all exchange, packed as x, y pairs of ints.
+ *
+ * The file format is that of GameOfLifeFileIO, one cell to a line.  Every
+ * processor must be able to read the file, and must call the collective
+ * methods together.
+ * @author Alex Maskovyak
+ *
+ */
+public class DistributedCellLoader {
+
+	//
+	// Private member variables
+	//
+
+	// set to true to load in parallel rather than on the master
+	public static final String PARALLEL_LOAD_PROPERTY = "gol.parallelLoad";
+
+	// a mapping may not exceed the largest int, so shares are mapped a
+	// window at a time
+	protected static final long WINDOW_BYTES = 64L * 1024 * 1024;
+
+	// ints per packed cell
+	protected static final int CELL_INTS = 2;
+
+	protected Comm commWorld;
+	protected int processorRank;
+	protected int numProcessors;
+	protected File cellsFile;
+
+	// parse state, carried from one window to the next
+	protected boolean atLineStart;
+	protected boolean skippingLine;
+	protected boolean inNumber;
+	protected boolean negative;
+	protected int number;
+	protected int fieldCount;
+	protected int x;
+	protected int y;
+
+
+	/**
+	 * Constructor.
+	 * @param commWorld Communicator holding every processor.
+	 * @param cellsFile File containing cells, one "x y" pair to a line.
+	 */
+	public DistributedCellLoader(Comm commWorld, File cellsFile) {
+		this.commWorld = commWorld;
+		this.processorRank = commWorld.rank();
+		this.numProcessors = commWorld.size();
+		this.cellsFile = cellsFile;
+	}
+
+	/**
+	 * Determines whether files should be loaded in parallel, from the
+	 * gol.parallelLoad property.
+	 * @return True if every processor should load its share of the file.
+	 */
+	public static boolean isParallelLoad() {
+		return Boolean.getBoolean(PARALLEL_LOAD_PROPERTY);
+	}
+
+	/**
+	 * Parses this processor's share of the file.
+	 * @return Cells on the lines which begin in this processor's share.  Note,
+	 * that this list may possibly be empty in the case of an IO error.
+	 */
+	public List<Cell> readShare() {
+		List<Cell> liveCells = new ArrayList<Cell>();
+
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(this.cellsFile, "r");
+			FileChannel channel = file.getChannel();
+
+			long size = channel.size();
+			long shareStart = size * this.processorRank / this.numProcessors;
+			long shareEnd = size * (this.processorRank + 1) / this.numProcessors;
+
+			// unless the share starts a line, that line belongs to the
+			// processor before us; look one byte back to find out
+			long position = shareStart;
+			this.resetLine();
+			if (shareStart > 0) {
+				position = shareStart - 1;
+				this.atLineStart = false;
+				this.skippingLine = true;
+			}
+
+			boolean finished = false;
+			while (!finished && position < size) {
+				long length = Math.min(WINDOW_BYTES, size - position);
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+				for (int i = 0; i < length; ++i) {
+					// lines which begin past our share are the next processor's
+					if (this.atLineStart && position + i >= shareEnd) {
+						finished = true;
+						break;
+					}
+					this.parse(window.get(i), liveCells);
+				}
+				position += length;
+			}
+
+			// the last line of the file may lack a newline
+			if (!finished) {
+				this.parse((byte)'\n', liveCells);
+			}
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		finally {
+			if (file != null) {
+				try {
+					file.close();
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		return liveCells;
+	}
+
+	/**
+	 * Clears the parse state for a new line.
+	 */
+	protected void resetLine() {
+		this.atLineStart = true;
+		this.skippingLine = false;
+		this.inNumber = false;
+		this.negative = false;
+		this.number = 0;
+		this.fieldCount = 0;
+	}
+
+	/**
+	 * Parses the next byte of the file, adding a cell at the end of each line
+	 * holding two ints.
+	 * @param b Byte to parse.
+	 * @param liveCells List to add parsed cells to.
+	 */
+	protected void parse(byte b, List<Cell> liveCells) {
+		if (b == '\n') {
+			this.endNumber();
+			if (!this.skippingLine && this.fieldCount >= CELL_INTS) {
+				liveCells.add(new Cell(this.x, this.y));
+			}
+			this.resetLine();
+			return;
+		}
+
+		this.atLineStart = false;
+		if (this.skippingLine) {
+			return;
+		}
+		if (b >= '0' && b <= '9') {
+			this.inNumber = true;
+			this.number = this.number * 10 + (b - '0');
+		}
+		else if (b == '-' && !this.inNumber) {
+			this.inNumber = true;
+			this.negative = true;
+		}
+		else {
+			this.endNumber();
+		}
+	}
+
+	/**
+	 * Finishes the number being parsed, if any, as the line's next field.
+	 */
+	protected void endNumber() {
+		if (!this.inNumber) {
+			return;
+		}
+
+		int value = this.negative ? -this.number : this.number;
+		if (this.fieldCount == 0) {
+			this.x = value;
+		}
+		else if (this.fieldCount == 1) {
+			this.y = value;
+		}
+		++this.fieldCount;
+
+		this.inNumber = false;
+		this.negative = false;
+		this.number = 0;
+	}
+
+	/**
+	 * Counts the cells in each column of the world across every processor,
+	 * so that every processor can divide the world the same way.
+	 * @param liveCells Cells this processor parsed.
+	 * @param minY Y coordinate of the world's first column.
+	 * @param columns Number of columns in the world.
+	 * @return Number of cells in each column, over every processor's share;
+	 * cells outside of the columns are not counted.
+	 * @throws IOException
+	 */
+	public int[] countColumns(List<Cell> liveCells, int minY, int columns) throws IOException {
+		int[] counts = new int[columns];
+		for (Cell c : liveCells) {
+			int column = c.y - minY;
+			if (column >= 0 && column < columns) {
+				++counts[column];
+			}
+		}
+
+		this.commWorld.allReduce(IntegerBuf.buffer(counts), IntegerOp.SUM);
+		return counts;
+	}
+
+	/**
+	 * Sends the cells each processor parsed on to the processors which own
+	 * them.  Every processor sends every other the number of cells it has
+	 * for them, then the cells themselves.
+	 * @param ownedCells Cells parsed by this processor, listed by the rank of
+	 * the processor which owns them.
+	 * @return Cells this processor owns, from every processor's share.
+	 * @throws IOException
+	 */
+	public List<Cell> exchange(List<List<Cell>> ownedCells) throws IOException {
+		// trade counts, so that every receive is sized for what comes
+		IntegerBuf[] sendCounts = new IntegerBuf[this.numProcessors];
+		IntegerBuf[] receiveCounts = new IntegerBuf[this.numProcessors];
+		for (int rank = 0; rank < this.numProcessors; ++rank) {
+			sendCounts[rank] = IntegerBuf.buffer(ownedCells.get(rank).size());
+			receiveCounts[rank] = IntegerBuf.buffer();
+		}
+		this.commWorld.allToAll(sendCounts, receiveCounts);
+
+		// trade the cells themselves, packed
+		IntegerBuf[] sendCells = new IntegerBuf[this.numProcessors];
+		IntegerBuf[] receiveCells = new IntegerBuf[this.numProcessors];
+		for (int rank = 0; rank < this.numProcessors; ++rank) {
+			List<Cell> cells = ownedCells.get(rank);
+			int[] packed = new int[cells.size() * CELL_INTS];
+			for (int i = 0, size = cells.size(); i < size; ++i) {
+				Cell c = cells.get(i);
+				packed[i * CELL_INTS] = c.x;
+				packed[i * CELL_INTS + 1] = c.y;
+			}
+			sendCells[rank] = IntegerBuf.buffer(packed);
+			receiveCells[rank] = IntegerBuf.buffer(new int[receiveCounts[rank].get(0) * CELL_INTS]);
+		}
+		this.commWorld.allToAll(sendCells, receiveCells);
+
+		List<Cell> liveCells = new ArrayList<Cell>();
+		for (int rank = 0; rank < this.numProcessors; ++rank) {
+			IntegerBuf cells = receiveCells[rank];
+			for (int i = 0, length = cells.length(); i < length; i += CELL_INTS) {
+				liveCells.add(new Cell(cells.get(i), cells.get(i + 1)));
+			}
+		}
+		return liveCells;
+	}
+}
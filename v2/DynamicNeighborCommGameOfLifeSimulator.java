@@ -67,12 +67,27 @@ public class DynamicNeighborCommGameOfLifeSimulator extends
 			File cellsFile,
 			int iterationThreshold)	
 	{
-		super(rules, neighborhood, commWorld, cellsFile);
+		super(rules, requireNonWrapping(neighborhood), commWorld, cellsFile);
 		
 		this.iterationCount = 0;
 		this.iterationThreshold = iterationThreshold;
 	}
 	
+	/**
+	 * Load balancing moves cells between the neighbors of a line of
+	 * processors, which a ring of processors on a torus would break.
+	 * @param neighborhood Neighborhood to check.
+	 * @return The neighborhood, if it does not wrap.
+	 * @throws IllegalArgumentException If the neighborhood wraps.
+	 */
+	protected static CellNeighborhood requireNonWrapping(CellNeighborhood neighborhood) {
+		if (neighborhood.isWrapping()) {
+			throw new IllegalArgumentException(
+					"DynamicNeighborCommGameOfLifeSimulator does not support wrapping neighborhoods.");
+		}
+		return neighborhood;
+	}
+	
 	/**
 	 * Send this simulator current live cell count to the specified neighbor.
 	 * @param neighborRank Rank of the processor that is to receive the
@@ -237,6 +252,7 @@ public class DynamicNeighborCommGameOfLifeSimulator extends
 		            	this.addLivingCell(currentCell);
 		            }
 		        }
+				super.messageBuffers.releaseCells(CELL_SLOT, super.receiveStatus.length);
 			}
 			
 			// send as the left processor
@@ -302,6 +318,7 @@ public class DynamicNeighborCommGameOfLifeSimulator extends
 		            	this.addLivingCell(currentCell);
 		            }
 		        }
+				super.messageBuffers.releaseCells(CELL_SLOT, super.receiveStatus.length);
 			}
 			
 			// send as the right processor
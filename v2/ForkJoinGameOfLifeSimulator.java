@@ -0,0 +1,388 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * ForkJoinGameOfLifeSimulator computes a BitGridGameOfLifeSimulator board on
+ * a ForkJoinPool, with no dependence on Parallel Java.  Each generation the
+ * world is split recursively into quadrants, down to leaves of a tunable
+ * size, and quadrants with nothing alive in or around them are skipped, so
+ * the pool's work-stealing spreads clustered soups over its threads.
+ *
+ * Skipping relies on an occupancy summary of the board kept in 64x64 cell
+ * blocks, one word wide and 64 rows tall.  Leaves cover whole blocks, so each
+ * block of the next board's summary is written by exactly one task.
+ * @author Alex Maskovyak
+ *
+ */
+public class ForkJoinGameOfLifeSimulator extends BitGridGameOfLifeSimulator {
+
+	//
+	// Private member variables
+	//
+	public static final int BLOCK_SIZE = 64;
+	public static final int DEFAULT_LEAF_SIZE = 256;
+
+	protected ForkJoinPool pool;
+
+	// width and height of a leaf, in blocks
+	protected int leafBlocks;
+
+	// occupancy of each block of the current and next boards, row major
+	protected int blockRows;
+	protected int blockColumns;
+	protected boolean[] occupied;
+	protected boolean[] nextOccupied;
+
+	// cells added or removed since the summary was made
+	protected boolean occupancyDirty;
+
+
+	/**
+	 * Constructor, runs on the common pool with the default leaf size.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded.
+	 */
+	public ForkJoinGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood)
+	{
+		this(liveCells, rules, neighborhood, ForkJoinPool.commonPool(), DEFAULT_LEAF_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded.
+	 * @param pool Pool to run the quadrant tasks on.
+	 * @param leafSize Width and height, in cells, below which quadrants are
+	 * no longer split; rounded down to whole blocks.
+	 */
+	public ForkJoinGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood,
+			ForkJoinPool pool,
+			int leafSize)
+	{
+		super(liveCells, rules, neighborhood);
+
+		if (leafSize < BLOCK_SIZE) {
+			throw new IllegalArgumentException(
+					"Leaf size must be at least " + BLOCK_SIZE + ": " + leafSize);
+		}
+
+		this.pool = pool;
+		this.leafBlocks = leafSize / BLOCK_SIZE;
+
+		this.blockRows = (this.height + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		this.blockColumns = this.words;
+		this.occupied = new boolean[this.blockRows * this.blockColumns];
+		this.nextOccupied = new boolean[this.blockRows * this.blockColumns];
+		this.occupancyDirty = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#performSimulation()
+	 */
+	public void performSimulation() throws Exception {
+		if (this.occupancyDirty) {
+			this.summarize();
+			this.occupancyDirty = false;
+		}
+
+		this.prepareBorders();
+		this.pool.invoke(new QuadrantStep(0, this.blockRows, 0, this.blockColumns));
+		this.swapBoards();
+	}
+
+	/**
+	 * Computes the next generation of one quadrant of blocks, splitting it
+	 * into smaller quadrants until it is no larger than a leaf.
+	 */
+	protected class QuadrantStep extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		// blocks covered, first inclusive and last exclusive
+		protected final int firstBlockRow, lastBlockRow;
+		protected final int firstBlockColumn, lastBlockColumn;
+
+		/**
+		 * Constructor.
+		 * @param firstBlockRow First block row covered.
+		 * @param lastBlockRow One past the last block row covered.
+		 * @param firstBlockColumn First block column covered.
+		 * @param lastBlockColumn One past the last block column covered.
+		 */
+		protected QuadrantStep(
+				int firstBlockRow,
+				int lastBlockRow,
+				int firstBlockColumn,
+				int lastBlockColumn)
+		{
+			this.firstBlockRow = firstBlockRow;
+			this.lastBlockRow = lastBlockRow;
+			this.firstBlockColumn = firstBlockColumn;
+			this.lastBlockColumn = lastBlockColumn;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute() {
+			if (isQuiet(this.firstBlockRow, this.lastBlockRow,
+					this.firstBlockColumn, this.lastBlockColumn)) {
+				clearBlocks(this.firstBlockRow, this.lastBlockRow,
+						this.firstBlockColumn, this.lastBlockColumn);
+				return;
+			}
+
+			int rows = this.lastBlockRow - this.firstBlockRow;
+			int columns = this.lastBlockColumn - this.firstBlockColumn;
+			if (rows <= leafBlocks && columns <= leafBlocks) {
+				stepBlocks(this.firstBlockRow, this.lastBlockRow,
+						this.firstBlockColumn, this.lastBlockColumn);
+				return;
+			}
+
+			// halve each side that is larger than a leaf
+			int middleRow = (rows > leafBlocks) ?
+				this.firstBlockRow + rows / 2 : this.lastBlockRow;
+			int middleColumn = (columns > leafBlocks) ?
+				this.firstBlockColumn + columns / 2 : this.lastBlockColumn;
+
+			List<QuadrantStep> quadrants = new ArrayList<QuadrantStep>(4);
+			quadrants.add(new QuadrantStep(
+					this.firstBlockRow, middleRow, this.firstBlockColumn, middleColumn));
+			if (middleColumn < this.lastBlockColumn) {
+				quadrants.add(new QuadrantStep(
+						this.firstBlockRow, middleRow, middleColumn, this.lastBlockColumn));
+			}
+			if (middleRow < this.lastBlockRow) {
+				quadrants.add(new QuadrantStep(
+						middleRow, this.lastBlockRow, this.firstBlockColumn, middleColumn));
+				if (middleColumn < this.lastBlockColumn) {
+					quadrants.add(new QuadrantStep(
+							middleRow, this.lastBlockRow, middleColumn, this.lastBlockColumn));
+				}
+			}
+
+			invokeAll(quadrants);
+		}
+	}
+
+	/**
+	 * Determines whether a quadrant and the ring of blocks around it are
+	 * empty, in which case the whole quadrant stays empty.  The ring wraps
+	 * with the world.
+	 * @param firstBlockRow First block row of the quadrant.
+	 * @param lastBlockRow One past the last block row.
+	 * @param firstBlockColumn First block column of the quadrant.
+	 * @param lastBlockColumn One past the last block column.
+	 * @return True if nothing can come to life in the quadrant.
+	 */
+	protected boolean isQuiet(
+			int firstBlockRow,
+			int lastBlockRow,
+			int firstBlockColumn,
+			int lastBlockColumn)
+	{
+		for (int blockRow = firstBlockRow - 1; blockRow <= lastBlockRow; ++blockRow) {
+			int r = this.wrapBlock(blockRow, this.blockRows);
+			if (r < 0) {
+				continue;
+			}
+
+			for (int blockColumn = firstBlockColumn - 1; blockColumn <= lastBlockColumn; ++blockColumn) {
+				int c = this.wrapBlock(blockColumn, this.blockColumns);
+				if (c >= 0 && this.occupied[r * this.blockColumns + c]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Maps a block index one step past either edge onto the board.
+	 * @param block Block row or column, from -1 to count inclusive.
+	 * @param count Number of blocks along the axis.
+	 * @return Block on the board, or -1 if the world does not wrap and the
+	 * block lies outside of it.
+	 */
+	protected int wrapBlock(int block, int count) {
+		if (block >= 0 && block < count) {
+			return block;
+		}
+		if (!this.wrapping) {
+			return -1;
+		}
+		return (block < 0) ? count - 1 : 0;
+	}
+
+	/**
+	 * Empties a quadrant of the next board.  Blocks the summary shows to be
+	 * empty already are left alone.
+	 * @param firstBlockRow First block row of the quadrant.
+	 * @param lastBlockRow One past the last block row.
+	 * @param firstBlockColumn First block column of the quadrant.
+	 * @param lastBlockColumn One past the last block column.
+	 */
+	protected void clearBlocks(
+			int firstBlockRow,
+			int lastBlockRow,
+			int firstBlockColumn,
+			int lastBlockColumn)
+	{
+		for (int blockRow = firstBlockRow; blockRow < lastBlockRow; ++blockRow) {
+			int firstRow = blockRow * BLOCK_SIZE;
+			int lastRow = Math.min(firstRow + BLOCK_SIZE, this.height);
+
+			for (int blockColumn = firstBlockColumn; blockColumn < lastBlockColumn; ++blockColumn) {
+				int block = blockRow * this.blockColumns + blockColumn;
+				if (!this.nextOccupied[block]) {
+					continue;
+				}
+
+				for (int row = firstRow; row < lastRow; ++row) {
+					this.next[this.rowOffset(row) + blockColumn] = 0L;
+				}
+				this.nextOccupied[block] = false;
+			}
+		}
+	}
+
+	/**
+	 * Computes the next generation of a leaf quadrant and summarizes the
+	 * blocks it produced.
+	 * @param firstBlockRow First block row of the quadrant.
+	 * @param lastBlockRow One past the last block row.
+	 * @param firstBlockColumn First block column of the quadrant.
+	 * @param lastBlockColumn One past the last block column.
+	 */
+	protected void stepBlocks(
+			int firstBlockRow,
+			int lastBlockRow,
+			int firstBlockColumn,
+			int lastBlockColumn)
+	{
+		long[] src = this.current;
+		long[] dst = this.next;
+		int columns = lastBlockColumn - firstBlockColumn;
+		boolean lastColumn = (lastBlockColumn == this.words);
+
+		for (int blockRow = firstBlockRow; blockRow < lastBlockRow; ++blockRow) {
+			int firstRow = blockRow * BLOCK_SIZE;
+			int lastRow = Math.min(firstRow + BLOCK_SIZE, this.height);
+
+			for (int row = firstRow; row < lastRow; ++row) {
+				int offset = this.rowOffset(row) + firstBlockColumn;
+				BitLifeKernel.stepRow(
+						src,
+						offset - this.stride,
+						offset,
+						offset + this.stride,
+						columns,
+						dst,
+						offset,
+						this.survivalMask,
+						this.birthMask);
+
+				// cells past the right edge of the world never come to life
+				if (lastColumn) {
+					dst[offset + columns - 1] &= this.lastWordMask;
+				}
+			}
+
+			for (int blockColumn = firstBlockColumn; blockColumn < lastBlockColumn; ++blockColumn) {
+				this.nextOccupied[blockRow * this.blockColumns + blockColumn] =
+					this.isOccupied(dst, firstRow, lastRow, blockColumn);
+			}
+		}
+	}
+
+	/**
+	 * Determines whether any cell of a block is alive.
+	 * @param board Board to look at.
+	 * @param firstRow First row of the block.
+	 * @param lastRow One past the last row of the block.
+	 * @param blockColumn Word of the row holding the block.
+	 * @return True if the block holds a live cell.
+	 */
+	protected boolean isOccupied(long[] board, int firstRow, int lastRow, int blockColumn) {
+		long mask = (blockColumn == this.words - 1) ? this.lastWordMask : -1L;
+		for (int row = firstRow; row < lastRow; ++row) {
+			if ((board[this.rowOffset(row) + blockColumn] & mask) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Rebuilds the summary of the current board from scratch.
+	 */
+	protected void summarize() {
+		for (int blockRow = 0; blockRow < this.blockRows; ++blockRow) {
+			int firstRow = blockRow * BLOCK_SIZE;
+			int lastRow = Math.min(firstRow + BLOCK_SIZE, this.height);
+
+			for (int blockColumn = 0; blockColumn < this.blockColumns; ++blockColumn) {
+				this.occupied[blockRow * this.blockColumns + blockColumn] =
+					this.isOccupied(this.current, firstRow, lastRow, blockColumn);
+			}
+		}
+
+		// the next board is unknown, so make sure every block of it is cleared
+		// or overwritten
+		Arrays.fill(this.nextOccupied, true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see BitGridGameOfLifeSimulator#swapBoards()
+	 */
+	protected void swapBoards() {
+		super.swapBoards();
+
+		boolean[] summary = this.occupied;
+		this.occupied = this.nextOccupied;
+		this.nextOccupied = summary;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#addLivingCell()
+	 */
+	public void addLivingCell(Cell livingCell) {
+		super.addLivingCell(livingCell);
+		this.occupancyDirty = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#clearLivingCells()
+	 */
+	public void clearLivingCells() {
+		super.clearLivingCells();
+		this.occupancyDirty = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#removeLivingCell(Cell)
+	 */
+	public void removeLivingCell(Cell livingCell) {
+		super.removeLivingCell(livingCell);
+		this.occupancyDirty = true;
+	}
+}
@@ -1,8 +1,10 @@
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import edu.rit.pj.Comm;
+import edu.rit.pj.ParallelTeam;
 
 /**
  * Handles the execution of the game of life.
@@ -11,12 +13,13 @@ import edu.rit.pj.Comm;
  */
 public class GameOfLife {
 
-	public enum EngineType { SEQ, MP, DYN_MP, SMP };
+	public enum EngineType { SEQ, MP, DYN_MP, SMP, PACKED_SEQ, BITGRID, BITGRID_VECTOR, HASHLIFE, TILED, TILED_TRACKED, BANDED_SMP, FORKJOIN, DATAFLOW, BITGRID_TEMPORAL, HYBRID_MP, BLOCK_MP };
 	public static final int COMMAND_LINE_LENGTH = 5;
 	public static final String USAGE = 
-		"java -Dpj.np=[num processors] GameOfLife " +
+		"java -Dpj.np=[num processors] [-Dgol.rule=B3/S23] [-Dgol.torus=true] [-Dgol.leafSize=256] [-Dgol.schedule=adaptive] " +
+		"[-Dgol.blockGenerations=4] [-Dgol.threadsPerRank=n] [-Dgol.ghostDepth=k|auto] [-Dgol.parallelLoad=true] [-Dgol.unbounded=true] GameOfLife " +
 		"[num rows] [num columns] [iterations] [input filename]" +
-		"[engine type: {SEQ, MP, DYN_MP, SMP}]";
+		"[engine type: {SEQ, MP, DYN_MP, SMP, PACKED_SEQ, BITGRID, BITGRID_VECTOR, HASHLIFE, TILED, TILED_TRACKED, BANDED_SMP, FORKJOIN, DATAFLOW, BITGRID_TEMPORAL, HYBRID_MP, BLOCK_MP}]";
 	
 	/**
 	 * Main executable method for the game of life.
@@ -49,8 +52,11 @@ public class GameOfLife {
 		// specify rules to use
 		// specify interconnection framework
 		// specify simulation environment
-		CellLifeRules rules = new ConwayCellLifeRules();
-		CellNeighborhood neighborhood = 
+		String ruleString = System.getProperty("gol.rule");
+		CellLifeRules rules = (ruleString == null) ?
+				new ConwayCellLifeRules() : new RuleStringCellLifeRules(ruleString);
+		CellNeighborhood neighborhood = Boolean.getBoolean("gol.torus") ?
+			new ToroidalCellNeighborhood(0, numGridCols, 0, numGridRows) :
 			new ConwayCellNeighborhood(0, numGridCols, 0, numGridRows);
 		
 		// get file for input
@@ -79,7 +85,8 @@ public class GameOfLife {
 						rules,
 						neighborhood,
 						commWorld,
-						cellsFile);
+						cellsFile,
+						NeighborCommGameOfLifeSimulator.ghostDepthProperty());
 				break;
 			case DYN_MP: 
 				simulator = new DynamicNeighborCommGameOfLifeSimulator(
@@ -89,12 +96,96 @@ public class GameOfLife {
 						cellsFile,
 						1);
 				break;
+			case BLOCK_MP:
+				simulator = new BlockCommGameOfLifeSimulator(
+						rules,
+						neighborhood,
+						commWorld,
+						cellsFile);
+				break;
+			case HYBRID_MP:
+				simulator = new HybridNeighborCommGameOfLifeSimulator(
+						rules,
+						neighborhood,
+						commWorld,
+						cellsFile,
+						Integer.getInteger("gol.threadsPerRank", ParallelTeam.getDefaultThreadCount()),
+						NeighborCommGameOfLifeSimulator.ghostDepthProperty());
+				break;
 			case SMP: 
 			   simulator = new SMPGameOfLifeSimulator(
                   rules,
                   neighborhood,
                   cellsFile);
 				break;
+			case PACKED_SEQ:
+				simulator = new PackedSequentialGameOfLifeSimulator(
+						GameOfLifeFileIO.getLiveCells(cellsFile),
+						rules,
+						neighborhood);
+				break;
+			case BITGRID:
+				simulator = new BitGridGameOfLifeSimulator(
+						GameOfLifeFileIO.getLiveCells(cellsFile),
+						rules,
+						neighborhood);
+				break;
+			case BITGRID_VECTOR:
+				simulator = createVectorBitGridSimulator(
+						GameOfLifeFileIO.getLiveCells(cellsFile),
+						rules,
+						neighborhood);
+				break;
+			case HASHLIFE:
+				// only an unbounded world can be advanced in jumps of 2^k
+				// generations, a bounded one goes a generation at a time
+				simulator = new HashLifeGameOfLifeSimulator(
+						GameOfLifeFileIO.getLiveCells(cellsFile),
+						rules,
+						Boolean.getBoolean("gol.unbounded") ?
+							new ConwayCellNeighborhood() : neighborhood);
+				break;
+			case TILED:
+				simulator = new TiledGameOfLifeSimulator(
+						GameOfLifeFileIO.getLiveCells(cellsFile),
+						rules,
+						neighborhood);
+				break;
+			case TILED_TRACKED:
+				simulator = new TiledGameOfLifeSimulator(
+						GameOfLifeFileIO.getLiveCells(cellsFile),
+						rules,
+						neighborhood,
+						true);
+				break;
+			case BANDED_SMP:
+				simulator = new BandedSMPGameOfLifeSimulator(
+						rules,
+						neighborhood,
+						cellsFile);
+				break;
+			case FORKJOIN:
+				simulator = new ForkJoinGameOfLifeSimulator(
+						GameOfLifeFileIO.getLiveCells(cellsFile),
+						rules,
+						neighborhood,
+						ForkJoinPool.commonPool(),
+						Integer.getInteger("gol.leafSize", ForkJoinGameOfLifeSimulator.DEFAULT_LEAF_SIZE));
+				break;
+			case DATAFLOW:
+				simulator = new DataflowGameOfLifeSimulator(
+						GameOfLifeFileIO.getLiveCells(cellsFile),
+						rules,
+						neighborhood);
+				break;
+			case BITGRID_TEMPORAL:
+				simulator = new TemporalBitGridGameOfLifeSimulator(
+						GameOfLifeFileIO.getLiveCells(cellsFile),
+						rules,
+						neighborhood,
+						Integer.getInteger("gol.blockGenerations", 
+								TemporalBitGridGameOfLifeSimulator.DEFAULT_GENERATIONS_PER_PASS));
+				break;
 			default:
 				List<Cell> liveCells = 
 					GameOfLifeFileIO.getLiveCells(cellsFile);
@@ -107,7 +198,18 @@ public class GameOfLife {
 
 		//System.out.printf("%d cells alive\n", simulator.getLivingCellCount());
 
-		// run the simulation
+		// run the simulation, in one call if the simulator gains from it
+		if (simulator instanceof MultiStepGameOfLifeSimulator) {
+			try
+			{
+				((MultiStepGameOfLifeSimulator)simulator).performSimulations(iterationsToRun);
+			}
+			catch (Exception e)
+			{
+				System.out.println("PerformSimulation Exception: " + e.getMessage());
+			}
+			iterationsToRun = 0;
+		}
 		for (int i = 0; i < iterationsToRun; ++i) {
 		   try
 		   {
@@ -121,6 +223,13 @@ public class GameOfLife {
 		}	
 		
 		System.out.printf("%d has %d cells alive\n", commWorld.rank(), simulator.getLivingCellCount());
+		if (simulator instanceof NeighborCommGameOfLifeSimulator) {
+			System.out.printf("%d waited %dms for borders, exchanged every %d generations\n",
+					commWorld.rank(),
+					convertNanoSecondsToMilliseconds(
+							((NeighborCommGameOfLifeSimulator)simulator).getBorderWaitTime()),
+					((NeighborCommGameOfLifeSimulator)simulator).getGhostDepth());
+		}
 		
 		for (Cell c : simulator.getCurrentState()) {
 			//System.out.printf("%d: %s\n", commWorld.rank(), c);
@@ -207,6 +316,35 @@ public class GameOfLife {
 		}
 	}
 	
+	/**
+	 * Creates a VectorBitGridGameOfLifeSimulator, or a plain
+	 * BitGridGameOfLifeSimulator when the Vector API is unavailable.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded.
+	 * @return Bit grid simulator of the cells.
+	 */
+	public static BitGridGameOfLifeSimulator createVectorBitGridSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood)
+	{
+		try {
+			return new VectorBitGridGameOfLifeSimulator(
+					liveCells,
+					rules,
+					neighborhood);
+		}
+		catch (LinkageError e) {
+			// run without --add-modules jdk.incubator.vector
+			System.out.println("Vector API unavailable, using BITGRID");
+			return new BitGridGameOfLifeSimulator(
+					liveCells,
+					rules,
+					neighborhood);
+		}
+	}
+	
 	/**
 	 * Converts nanoseconds to milliseconds.
 	 * @param nanoSeconds Number of nanoseconds to convert.
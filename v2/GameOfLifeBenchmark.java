@@ -0,0 +1,258 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import edu.rit.pj.ParallelTeam;
+
+
+/**
+ * Times single-process engines against one another on the same random board.
+ * Every engine is warmed up before it is timed, and the final populations are
+ * compared so that a fast but wrong engine is noticed.
+ *
+ * With -Dgol.verify=ENGINE nothing is timed: each engine is stepped in
+ * lockstep with the named reference engine instead, and the two sets of live
+ * cells are compared after every generation.  Run with many iterations and
+ * threads, this is the stress check for the concurrent engines.
+ * @author Alex Maskovyak
+ *
+ */
+public class GameOfLifeBenchmark {
+
+	public static final String USAGE =
+		"java [--add-modules jdk.incubator.vector] [-Dgol.rule=B3/S23] [-Dgol.torus=true] [-Dgol.verify=SEQ] " +
+		"[-Dgol.leafSize=256] [-Dgol.schedule=adaptive] [-Dgol.blockGenerations=4] GameOfLifeBenchmark " +
+		"[board size] [density] [iterations] [engine type...]";
+
+	public static final int WARMUP_ITERATIONS = 20;
+	public static final long SEED = 42;
+
+	/**
+	 * Main executable method for the benchmark.
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 4) {
+			System.out.println(GameOfLifeBenchmark.USAGE);
+			System.exit(1);
+		}
+
+		int size = Integer.parseInt(args[0]);
+		double density = Double.parseDouble(args[1]);
+		int iterationsToRun = Integer.parseInt(args[2]);
+
+		String ruleString = System.getProperty("gol.rule");
+		CellLifeRules rules = (ruleString == null) ?
+				new ConwayCellLifeRules() : new RuleStringCellLifeRules(ruleString);
+		CellNeighborhood neighborhood = Boolean.getBoolean("gol.torus") ?
+			new ToroidalCellNeighborhood(0, size, 0, size) :
+			new ConwayCellNeighborhood(0, size, 0, size);
+
+		List<Cell> board = createBoard(size, density);
+		System.out.printf("%dx%d board, %d cells alive\n", size, size, board.size());
+
+		String verifyEngine = System.getProperty("gol.verify");
+		if (verifyEngine != null) {
+			GameOfLife.EngineType reference = GameOfLife.EngineType.valueOf(verifyEngine);
+			for (int i = 3; i < args.length; ++i) {
+				GameOfLife.EngineType engine = GameOfLife.EngineType.valueOf(args[i]);
+				GameOfLifeSimulator simulator = createSimulator(engine, board, rules, neighborhood);
+				if (simulator == null) {
+					System.out.printf("%s: not a single-process engine\n", engine);
+					continue;
+				}
+
+				int generation = verify(
+						createSimulator(reference, board, rules, neighborhood),
+						simulator,
+						iterationsToRun);
+				if (generation < 0) {
+					System.out.printf("%s: matches %s for %d generations\n",
+							engine, reference, iterationsToRun);
+				}
+				else {
+					System.out.printf("%s: differs from %s at generation %d\n",
+							engine, reference, generation);
+				}
+			}
+			return;
+		}
+
+		int expectedCount = -1;
+		for (int i = 3; i < args.length; ++i) {
+			GameOfLife.EngineType engine = GameOfLife.EngineType.valueOf(args[i]);
+
+			GameOfLifeSimulator simulator;
+			try {
+				simulator = createSimulator(engine, board, rules, neighborhood);
+			}
+			catch (LinkageError e) {
+				System.out.printf("%s: unavailable (%s)\n", engine, e);
+				continue;
+			}
+			catch (IllegalArgumentException e) {
+				System.out.printf("%s: unavailable (%s)\n", engine, e.getMessage());
+				continue;
+			}
+			if (simulator == null) {
+				System.out.printf("%s: not a single-process engine\n", engine);
+				continue;
+			}
+
+			long runTime = time(simulator, WARMUP_ITERATIONS, iterationsToRun);
+
+			double cellUpdates = (double)size * size * iterationsToRun;
+			System.out.printf("%s: %dms, %.3fms/iteration, %.1f Mcells/s, %d cells alive\n",
+					engine,
+					GameOfLife.convertNanoSecondsToMilliseconds(runTime),
+					runTime / 1e6 / iterationsToRun,
+					cellUpdates / (runTime / 1e3),
+					simulator.getLivingCellCount());
+
+			if (expectedCount < 0) {
+				expectedCount = simulator.getLivingCellCount();
+			}
+			else if (expectedCount != simulator.getLivingCellCount()) {
+				System.out.printf("%s: population differs from %s\n", engine, args[3]);
+			}
+		}
+	}
+
+	/**
+	 * Creates a random board, the same one for a given size and density.
+	 * @param size Width and height of the board.
+	 * @param density Chance of each cell being alive.
+	 * @return Live cells of the board.
+	 */
+	public static List<Cell> createBoard(int size, double density) {
+		Random random = new Random(SEED);
+		List<Cell> cells = new ArrayList<Cell>();
+		for (int y = 0; y < size; ++y) {
+			for (int x = 0; x < size; ++x) {
+				if (random.nextDouble() < density) {
+					cells.add(new Cell(x, y));
+				}
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * Creates an engine that runs within this process.
+	 * @param engine Engine to create.
+	 * @param liveCells Live cells of the board.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity.
+	 * @return Simulator, or null if the engine needs a Comm world.
+	 */
+	public static GameOfLifeSimulator createSimulator(
+			GameOfLife.EngineType engine,
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood)
+	{
+		switch (engine) {
+			case SEQ:
+				return new SequentialGameOfLifeSimulator(liveCells, rules, neighborhood);
+			case SMP:
+				return new SMPGameOfLifeSimulator(
+						liveCells, rules, neighborhood, ParallelTeam.getDefaultThreadCount());
+			case PACKED_SEQ:
+				return new PackedSequentialGameOfLifeSimulator(liveCells, rules, neighborhood);
+			case BITGRID:
+				return new BitGridGameOfLifeSimulator(liveCells, rules, neighborhood);
+			case BITGRID_VECTOR:
+				return GameOfLife.createVectorBitGridSimulator(liveCells, rules, neighborhood);
+			case HASHLIFE:
+				return new HashLifeGameOfLifeSimulator(liveCells, rules, neighborhood);
+			case TILED:
+				return new TiledGameOfLifeSimulator(liveCells, rules, neighborhood);
+			case TILED_TRACKED:
+				return new TiledGameOfLifeSimulator(liveCells, rules, neighborhood, true);
+			case BANDED_SMP:
+				return new BandedSMPGameOfLifeSimulator(
+						liveCells, rules, neighborhood, ParallelTeam.getDefaultThreadCount());
+			case FORKJOIN:
+				return new ForkJoinGameOfLifeSimulator(
+						liveCells, rules, neighborhood, ForkJoinPool.commonPool(),
+						Integer.getInteger("gol.leafSize", ForkJoinGameOfLifeSimulator.DEFAULT_LEAF_SIZE));
+			case DATAFLOW:
+				return new DataflowGameOfLifeSimulator(liveCells, rules, neighborhood);
+			case BITGRID_TEMPORAL:
+				return new TemporalBitGridGameOfLifeSimulator(
+						liveCells, rules, neighborhood,
+						Integer.getInteger("gol.blockGenerations",
+								TemporalBitGridGameOfLifeSimulator.DEFAULT_GENERATIONS_PER_PASS));
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Runs the warm up iterations untimed, then times the rest.
+	 * @param simulator Simulator to time.
+	 * @param warmupIterations Iterations to run before timing.
+	 * @param iterationsToRun Iterations to time.
+	 * @return Time taken by the timed iterations, in nanoseconds.
+	 * @throws Exception
+	 */
+	public static long time(
+			GameOfLifeSimulator simulator,
+			int warmupIterations,
+			int iterationsToRun) throws Exception
+	{
+		run(simulator, warmupIterations);
+
+		long startTime = System.nanoTime();
+		run(simulator, iterationsToRun);
+		return System.nanoTime() - startTime;
+	}
+
+	/**
+	 * Advances a simulator, in a single call if it supports running several
+	 * generations at once.
+	 * @param simulator Simulator to advance.
+	 * @param generations Generations to run.
+	 * @throws Exception
+	 */
+	public static void run(GameOfLifeSimulator simulator, int generations) throws Exception {
+		if (simulator instanceof MultiStepGameOfLifeSimulator) {
+			((MultiStepGameOfLifeSimulator)simulator).performSimulations(generations);
+			return;
+		}
+
+		for (int i = 0; i < generations; ++i) {
+			simulator.performSimulation();
+		}
+	}
+
+	/**
+	 * Steps two simulators of the same board together, comparing their live
+	 * cells after every generation.
+	 * @param reference Simulator trusted to be correct.
+	 * @param simulator Simulator to check.
+	 * @param generations Generations to run.
+	 * @return First generation at which the two differ, -1 if they never do.
+	 * @throws Exception
+	 */
+	public static int verify(
+			GameOfLifeSimulator reference,
+			GameOfLifeSimulator simulator,
+			int generations) throws Exception
+	{
+		for (int generation = 1; generation <= generations; ++generation) {
+			reference.performSimulation();
+			simulator.performSimulation();
+
+			if (reference.getLivingCellCount() != simulator.getLivingCellCount() ||
+				!new HashSet<Cell>(reference.getCurrentState()).equals(
+					new HashSet<Cell>(simulator.getCurrentState()))) {
+				return generation;
+			}
+		}
+		return -1;
+	}
+}
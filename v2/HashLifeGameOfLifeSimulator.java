@@ -0,0 +1,792 @@
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * HashLifeGameOfLifeSimulator implements Gosper's HashLife algorithm.  The
+ * world is a quadtree whose nodes are canonicalized through a hash table, so
+ * identical regions are stored once, and each node memoizes the result of
+ * advancing its center.  Repetitive patterns can then be advanced by 2^k
+ * generations with a single call, at a cost that depends on the number of
+ * distinct nodes rather than on the number of live cells or generations.
+ *
+ * The quadtree models an unbounded plane.  If the neighborhood has bounds,
+ * single generation steps remove the cells that leave them, which matches the
+ * other simulators exactly.  Cells leaving the bounds must not feed back into
+ * the world, so bounded worlds are always advanced a generation at a time;
+ * only unbounded worlds gain from jumps of 2^k generations.  Leaf computations go through a LookupLifeKernel
+ * compiled from the rules when the simulator is created.
+ *
+ * The node table is held to a budget.  A jump that would outgrow it is
+ * abandoned, the table is collected and the jump retried; if it still does
+ * not fit, it is made as two jumps of half the length.  A pattern which does
+ * not fit the budget even for a single generation is an error.
+ * @author Alex Maskovyak
+ *
+ */
+public class HashLifeGameOfLifeSimulator implements MultiStepGameOfLifeSimulator {
+
+	/**
+	 * Canonical quadtree node.  Level 0 nodes are single cells, a node of
+	 * level n covers a square of 2^n cells on a side.
+	 */
+	protected static final class Node {
+		final Node nw, ne, sw, se;
+		final int level;
+		final long population;
+		final int hash;
+
+		// chain in the canonical node table
+		Node nextInBucket;
+
+		// center of this node advanced by 2^resultStep generations
+		Node result;
+		int resultStep = -1;
+
+		// collection epoch in which this node was last found reachable
+		int mark;
+
+		Node(boolean alive) {
+			this.nw = this.ne = this.sw = this.se = null;
+			this.level = 0;
+			this.population = alive ? 1 : 0;
+			this.hash = alive ? 1 : 0;
+		}
+
+		Node(Node nw, Node ne, Node sw, Node se) {
+			this.nw = nw;
+			this.ne = ne;
+			this.sw = sw;
+			this.se = se;
+			this.level = nw.level + 1;
+			this.population = nw.population + ne.population + sw.population + se.population;
+			this.hash = hash(nw, ne, sw, se);
+		}
+
+		static int hash(Node nw, Node ne, Node sw, Node se) {
+			int h = nw.hash;
+			h = h * 0x9E3779B1 + ne.hash;
+			h = h * 0x9E3779B1 + sw.hash;
+			h = h * 0x9E3779B1 + se.hash;
+			return h ^ (h >>> 15);
+		}
+	}
+
+	/**
+	 * Thrown out of a jump when the node table reaches its budget, to unwind
+	 * the recursion.  Never leaves the simulator.
+	 */
+	protected static final class NodeBudgetExceeded extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		NodeBudgetExceeded() {
+			super("node budget exceeded", null, false, false);
+		}
+	}
+
+	//
+	// Private member variables
+	//
+
+	// rough heap cost of a node and its table slot, used to turn a memory
+	// budget into a node budget
+	public static final int BYTES_PER_NODE = 80;
+	protected static final int MINIMUM_LEVEL = 3;
+
+	// leaves and empty nodes of every level
+	protected final Node deadCell = new Node(false);
+	protected final Node liveCell = new Node(true);
+	protected Node[] emptyNodes = new Node[] { this.deadCell };
+
+	// canonical node table
+	protected Node[] buckets;
+	protected int nodeCount;
+	protected long nodeBudget;
+	protected int collectionEpoch;
+
+	// set while a jump runs, when new nodes must fit the budget
+	protected boolean budgetEnforced;
+	protected static final NodeBudgetExceeded BUDGET_EXCEEDED = new NodeBudgetExceeded();
+
+	// the world, centered on the origin
+	protected Node root;
+	protected long generation;
+
+	// additional cell / game rules
+	protected CellLifeRules rules;
+	protected CellNeighborhood neighborhood;
+	protected LookupLifeKernel kernel;
+
+
+	/**
+	 * Default constructor.  The node cache may use up to a quarter of the
+	 * maximum heap.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity.
+	 */
+	public HashLifeGameOfLifeSimulator(
+			CellLifeRules rules,
+			CellNeighborhood neighborhood) {
+		this(new ArrayList<Cell>(), rules, neighborhood);
+	}
+
+	/**
+	 * Constructor.  The node cache may use up to a quarter of the maximum
+	 * heap.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity.
+	 */
+	public HashLifeGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood) {
+		this(liveCells, rules, neighborhood, Runtime.getRuntime().maxMemory() / 4);
+	}
+
+	/**
+	 * Constructor.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity.
+	 * @param memoryBudget Number of bytes the node cache may occupy.
+	 * 			Unreachable nodes and memoized results are collected to stay
+	 * 			within it.
+	 */
+	public HashLifeGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood,
+			long memoryBudget)
+	{
+		if (neighborhood.isWrapping()) {
+			throw new IllegalArgumentException(
+					"HashLifeGameOfLifeSimulator does not support wrapping neighborhoods.");
+		}
+
+		this.rules = rules;
+		this.neighborhood = neighborhood;
+		this.kernel = new LookupLifeKernel(rules);
+
+		this.buckets = new Node[1 << 16];
+		this.nodeBudget = Math.max(memoryBudget / BYTES_PER_NODE, 1 << 16);
+
+		this.root = this.empty(MINIMUM_LEVEL);
+		this.addLivingCells(liveCells);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#performSimulation()
+	 */
+	public void performSimulation() throws Exception {
+		this.step(0);
+		this.clipToBounds();
+	}
+
+	/**
+	 * Advances the world by 2^log2Generations generations, in one jump if the
+	 * world is unbounded.
+	 * @param log2Generations Base 2 logarithm of the generations to advance.
+	 */
+	public void performSimulation(int log2Generations) {
+		this.advance(1L << log2Generations);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see MultiStepGameOfLifeSimulator#performSimulations(int)
+	 */
+	public void performSimulations(int generations) throws Exception {
+		this.advance(generations);
+	}
+
+	/**
+	 * Advances the world by the specified number of generations, using the
+	 * largest jumps possible.  Bounded worlds are advanced a generation at a
+	 * time so that cells leaving the bounds never influence those inside.
+	 * @param generations Number of generations to advance.
+	 */
+	public void advance(long generations) {
+		if (this.neighborhood.getBounds() != null) {
+			for (long i = 0; i < generations; ++i) {
+				this.step(0);
+				this.clipToBounds();
+			}
+			return;
+		}
+
+		for (int bit = 0; generations != 0; ++bit, generations >>>= 1) {
+			if ((generations & 1) != 0) {
+				this.step(bit);
+			}
+		}
+	}
+
+	/**
+	 * Determines how many generations have been simulated.
+	 * @return Generations advanced since construction.
+	 */
+	public long getGeneration() {
+		return this.generation;
+	}
+
+	/**
+	 * Determines how many nodes are held in the canonical node table.
+	 * @return Count of cached nodes.
+	 */
+	public int getNodeCount() {
+		return this.nodeCount;
+	}
+
+	/**
+	 * Advances the root by 2^log2Generations generations, keeping the node
+	 * table within its budget.  A jump that outgrows the budget is retried
+	 * on a collected table, then split into two jumps of half the length.
+	 * @param log2Generations Base 2 logarithm of the generations to advance.
+	 * @throws IllegalStateException If a single generation does not fit the
+	 * 			budget.
+	 */
+	protected void step(int log2Generations) {
+		if (this.nodeCount > this.nodeBudget) {
+			this.collect();
+		}
+		if (this.tryStep(log2Generations)) {
+			return;
+		}
+
+		// start over on a table holding only the live pattern
+		this.collect();
+		if (this.tryStep(log2Generations)) {
+			return;
+		}
+
+		if (log2Generations == 0) {
+			throw new IllegalStateException(
+					"A node budget of " + this.nodeBudget + " nodes is too small to " +
+					"advance the pattern a single generation.");
+		}
+		this.step(log2Generations - 1);
+		this.step(log2Generations - 1);
+	}
+
+	/**
+	 * Attempts to advance the root by 2^log2Generations generations without
+	 * the node table growing past its budget.
+	 * @param log2Generations Base 2 logarithm of the generations to advance.
+	 * @return True if the root was advanced, false if the jump was abandoned
+	 * 			at the budget, leaving the root as it was.
+	 */
+	protected boolean tryStep(int log2Generations) {
+		this.budgetEnforced = true;
+		try {
+			// the pattern must sit in the middle of the root with enough empty
+			// space around it that nothing can escape during the jump
+			while (this.root.level < log2Generations + 2 || !this.isPadded(this.root)) {
+				this.root = this.expand(this.root);
+			}
+			this.root = this.successor(this.expand(this.root), log2Generations);
+		}
+		catch (NodeBudgetExceeded e) {
+			return false;
+		}
+		finally {
+			this.budgetEnforced = false;
+		}
+		this.generation += 1L << log2Generations;
+
+		// drop empty space so that later jumps start from a small root
+		while (this.root.level > MINIMUM_LEVEL && this.isCentered(this.root)) {
+			this.root = this.center(this.root);
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the center of the node advanced by 2^log2Generations
+	 * generations, memoizing the result on the node.
+	 * @param node Node of level 2 or above.
+	 * @param log2Generations Base 2 logarithm of the generations to advance,
+	 * 			reduced to level - 2 if larger.
+	 * @return Node one level below the given node.
+	 */
+	protected Node successor(Node node, int log2Generations) {
+		if (node.population == 0) {
+			return this.empty(node.level - 1);
+		}
+
+		int j = Math.min(log2Generations, node.level - 2);
+		if (node.result != null && node.resultStep == j) {
+			return node.result;
+		}
+
+		Node result;
+		if (node.level == 2) {
+			result = this.successorOfLevel2(node);
+		}
+		else {
+			// nine overlapping subnodes, each advanced 2^j or 2^(level-3)
+			Node c1 = this.successor(node.nw, j);
+			Node c2 = this.successor(this.join(node.nw.ne, node.ne.nw, node.nw.se, node.ne.sw), j);
+			Node c3 = this.successor(node.ne, j);
+			Node c4 = this.successor(this.join(node.nw.sw, node.nw.se, node.sw.nw, node.sw.ne), j);
+			Node c5 = this.successor(this.join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw), j);
+			Node c6 = this.successor(this.join(node.ne.sw, node.ne.se, node.se.nw, node.se.ne), j);
+			Node c7 = this.successor(node.sw, j);
+			Node c8 = this.successor(this.join(node.sw.ne, node.se.nw, node.sw.se, node.se.sw), j);
+			Node c9 = this.successor(node.se, j);
+
+			if (j < node.level - 2) {
+				// the subnodes are already far enough ahead, just recombine
+				result = this.join(
+						this.join(c1.se, c2.sw, c4.ne, c5.nw),
+						this.join(c2.se, c3.sw, c5.ne, c6.nw),
+						this.join(c4.se, c5.sw, c7.ne, c8.nw),
+						this.join(c5.se, c6.sw, c8.ne, c9.nw));
+			}
+			else {
+				// advance a second time to reach 2^(level-2)
+				result = this.join(
+						this.successor(this.join(c1, c2, c4, c5), j),
+						this.successor(this.join(c2, c3, c5, c6), j),
+						this.successor(this.join(c4, c5, c7, c8), j),
+						this.successor(this.join(c5, c6, c8, c9), j));
+			}
+		}
+
+		node.result = result;
+		node.resultStep = j;
+		return result;
+	}
+
+	/**
+	 * Computes the 2x2 center of a 4x4 node one generation ahead.
+	 * @param node Node of level 2.
+	 * @return Node of level 1.
+	 */
+	protected Node successorOfLevel2(Node node) {
+		int block = LookupLifeKernel.block(
+				this.cellsOf(node.nw),
+				this.cellsOf(node.ne),
+				this.cellsOf(node.sw),
+				this.cellsOf(node.se));
+		int center = this.kernel.next(block);
+
+		return this.join(
+				((center & 1) != 0) ? this.liveCell : this.deadCell,
+				((center & 2) != 0) ? this.liveCell : this.deadCell,
+				((center & 4) != 0) ? this.liveCell : this.deadCell,
+				((center & 8) != 0) ? this.liveCell : this.deadCell);
+	}
+
+	/**
+	 * Encodes the four cells of a level 1 node as LookupLifeKernel does.
+	 * @param node Node of level 1.
+	 * @return Cells of the node in bits 0 through 3.
+	 */
+	protected int cellsOf(Node node) {
+		return (int)(node.nw.population |
+				(node.ne.population << 1) |
+				(node.sw.population << 2) |
+				(node.se.population << 3));
+	}
+
+	/**
+	 * Retrieves the canonical node with the given children, creating it if
+	 * it does not exist yet.
+	 * @return Canonical node.
+	 */
+	protected Node join(Node nw, Node ne, Node sw, Node se) {
+		int hash = Node.hash(nw, ne, sw, se);
+		int index = hash & (this.buckets.length - 1);
+
+		for (Node n = this.buckets[index]; n != null; n = n.nextInBucket) {
+			if (n.nw == nw && n.ne == ne && n.sw == sw && n.se == se) {
+				return n;
+			}
+		}
+
+		// a jump must not grow the table past its budget
+		if (this.budgetEnforced && this.nodeCount >= this.nodeBudget) {
+			throw BUDGET_EXCEEDED;
+		}
+
+		Node n = new Node(nw, ne, sw, se);
+		n.nextInBucket = this.buckets[index];
+		this.buckets[index] = n;
+
+		if (++this.nodeCount > this.buckets.length) {
+			this.resizeTable(this.buckets.length << 1);
+		}
+		return n;
+	}
+
+	/**
+	 * Retrieves the empty node of the given level.
+	 * @param level Level of the node.
+	 * @return Canonical empty node.
+	 */
+	protected Node empty(int level) {
+		if (level >= this.emptyNodes.length) {
+			Node[] nodes = new Node[level + 1];
+			System.arraycopy(this.emptyNodes, 0, nodes, 0, this.emptyNodes.length);
+			for (int i = this.emptyNodes.length; i <= level; ++i) {
+				Node e = nodes[i - 1];
+				nodes[i] = this.join(e, e, e, e);
+			}
+			this.emptyNodes = nodes;
+		}
+		return this.emptyNodes[level];
+	}
+
+	/**
+	 * Surrounds the node with empty space, keeping it centered.
+	 * @param node Node to expand.
+	 * @return Node one level higher.
+	 */
+	protected Node expand(Node node) {
+		Node e = this.empty(node.level - 1);
+		return this.join(
+				this.join(e, e, e, node.nw),
+				this.join(e, e, node.ne, e),
+				this.join(e, node.sw, e, e),
+				this.join(node.se, e, e, e));
+	}
+
+	/**
+	 * Retrieves the center of the node.
+	 * @param node Node of level 2 or above.
+	 * @return Node one level lower.
+	 */
+	protected Node center(Node node) {
+		return this.join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+	}
+
+	/**
+	 * Determines whether all live cells lie in the center of the node.
+	 * @param node Node of level 2 or above.
+	 * @return True if the node can be replaced by its center.
+	 */
+	protected boolean isCentered(Node node) {
+		return node.population == this.center(node).population;
+	}
+
+	/**
+	 * Determines whether all live cells lie in the central quarter of the
+	 * node.
+	 * @param node Node of level 3 or above.
+	 * @return True if the node has enough empty space around its pattern.
+	 */
+	protected boolean isPadded(Node node) {
+		return node.level >= MINIMUM_LEVEL &&
+			node.nw.population == node.nw.se.se.population &&
+			node.ne.population == node.ne.sw.sw.population &&
+			node.sw.population == node.sw.ne.ne.population &&
+			node.se.population == node.se.nw.nw.population;
+	}
+
+	/**
+	 * Sets the state of a single cell.
+	 * @param x X coordinate value.
+	 * @param y Y coordinate value.
+	 * @param alive New state of the cell.
+	 */
+	protected void setCell(int x, int y, boolean alive) {
+		// grow until the cell is inside the root
+		while (!this.contains(this.root, x, y)) {
+			this.root = this.expand(this.root);
+		}
+		this.root = this.setCell(this.root, x, y, alive);
+
+		// each change leaves a path of replaced nodes behind
+		if (this.nodeCount > this.nodeBudget) {
+			this.collect();
+		}
+	}
+
+	/**
+	 * Sets the state of a cell in the node.
+	 * @param node Node containing the cell.
+	 * @param x X coordinate value relative to the node's center.
+	 * @param y Y coordinate value relative to the node's center.
+	 * @param alive New state of the cell.
+	 * @return Canonical node with the cell set.
+	 */
+	protected Node setCell(Node node, long x, long y, boolean alive) {
+		if (node.level == 0) {
+			return alive ? this.liveCell : this.deadCell;
+		}
+
+		long offset = (node.level == 1) ? 0 : (1L << (node.level - 2));
+		long childX = (x < 0) ? x + offset : x - offset;
+		long childY = (y < 0) ? y + offset : y - offset;
+
+		if (y < 0) {
+			if (x < 0) {
+				return this.join(this.setCell(node.nw, childX, childY, alive), node.ne, node.sw, node.se);
+			}
+			return this.join(node.nw, this.setCell(node.ne, childX, childY, alive), node.sw, node.se);
+		}
+		if (x < 0) {
+			return this.join(node.nw, node.ne, this.setCell(node.sw, childX, childY, alive), node.se);
+		}
+		return this.join(node.nw, node.ne, node.sw, this.setCell(node.se, childX, childY, alive));
+	}
+
+	/**
+	 * Reads the state of a single cell.
+	 * @param x X coordinate value.
+	 * @param y Y coordinate value.
+	 * @return True if the cell is alive, false otherwise.
+	 */
+	protected boolean getCell(int x, int y) {
+		if (!this.contains(this.root, x, y)) {
+			return false;
+		}
+
+		Node node = this.root;
+		long cx = x, cy = y;
+		while (node.level > 0 && node.population != 0) {
+			long offset = (node.level == 1) ? 0 : (1L << (node.level - 2));
+			if (cy < 0) {
+				node = (cx < 0) ? node.nw : node.ne;
+			}
+			else {
+				node = (cx < 0) ? node.sw : node.se;
+			}
+			cx = (cx < 0) ? cx + offset : cx - offset;
+			cy = (cy < 0) ? cy + offset : cy - offset;
+		}
+		return node.population != 0;
+	}
+
+	/**
+	 * Determines whether the coordinates fall inside the root-centered node.
+	 * @param node Node centered on the origin.
+	 * @param x X coordinate value.
+	 * @param y Y coordinate value.
+	 * @return True if the node covers the coordinates.
+	 */
+	protected boolean contains(Node node, long x, long y) {
+		long half = 1L << (node.level - 1);
+		return x >= -half && x < half && y >= -half && y < half;
+	}
+
+	/**
+	 * Removes cells outside of the neighborhood's bounds, if it has any.
+	 */
+	protected void clipToBounds() {
+		Rectangle bounds = this.neighborhood.getBounds();
+		if (bounds == null) {
+			return;
+		}
+		long half = 1L << (this.root.level - 1);
+		this.root = this.clip(this.root, -half, -half, bounds);
+
+		if (this.nodeCount > this.nodeBudget) {
+			this.collect();
+		}
+	}
+
+	/**
+	 * Clears every cell of the node lying outside of the bounds.
+	 * @param node Node to clip.
+	 * @param x Absolute x coordinate of the node's north-west corner.
+	 * @param y Absolute y coordinate of the node's north-west corner.
+	 * @param bounds Boundary to keep.
+	 * @return Canonical clipped node.
+	 */
+	protected Node clip(Node node, long x, long y, Rectangle bounds) {
+		if (node.population == 0) {
+			return node;
+		}
+
+		long size = 1L << node.level;
+		long xMin = bounds.x, xMax = (long)bounds.x + bounds.width;
+		long yMin = bounds.y, yMax = (long)bounds.y + bounds.height;
+
+		// entirely inside or outside
+		if (x >= xMin && x + size <= xMax && y >= yMin && y + size <= yMax) {
+			return node;
+		}
+		if (x >= xMax || x + size <= xMin || y >= yMax || y + size <= yMin) {
+			return this.empty(node.level);
+		}
+
+		long half = size >> 1;
+		return this.join(
+				this.clip(node.nw, x, y, bounds),
+				this.clip(node.ne, x + half, y, bounds),
+				this.clip(node.sw, x, y + half, bounds),
+				this.clip(node.se, x + half, y + half, bounds));
+	}
+
+	/**
+	 * Drops every node that is not reachable from the root, along with all
+	 * memoized results, once the node table grows past its budget.
+	 * @throws IllegalStateException If the reachable nodes alone exceed the
+	 * 			budget.
+	 */
+	protected void collect() {
+		this.collectionEpoch++;
+		this.mark(this.root);
+		for (Node e : this.emptyNodes) {
+			this.mark(e);
+		}
+
+		Node[] old = this.buckets;
+		this.buckets = new Node[old.length];
+		this.nodeCount = 0;
+
+		for (Node head : old) {
+			Node n = head;
+			while (n != null) {
+				Node following = n.nextInBucket;
+				if (n.mark == this.collectionEpoch) {
+					// results may point at nodes we are about to forget
+					n.result = null;
+					n.resultStep = -1;
+					int index = n.hash & (this.buckets.length - 1);
+					n.nextInBucket = this.buckets[index];
+					this.buckets[index] = n;
+					this.nodeCount++;
+				}
+				n = following;
+			}
+		}
+
+		if (this.nodeCount > this.nodeBudget) {
+			throw new IllegalStateException(
+					"The pattern alone needs " + this.nodeCount + " nodes, over the " +
+					"budget of " + this.nodeBudget + ".");
+		}
+	}
+
+	/**
+	 * Marks the node and its descendants as reachable.
+	 * @param node Node to mark.
+	 */
+	protected void mark(Node node) {
+		if (node.level == 0 || node.mark == this.collectionEpoch) {
+			return;
+		}
+		node.mark = this.collectionEpoch;
+		this.mark(node.nw);
+		this.mark(node.ne);
+		this.mark(node.sw);
+		this.mark(node.se);
+	}
+
+	/**
+	 * Rehashes the node table into the specified number of buckets.
+	 * @param capacity New number of buckets, a power of two.
+	 */
+	protected void resizeTable(int capacity) {
+		Node[] old = this.buckets;
+		this.buckets = new Node[capacity];
+		for (Node head : old) {
+			Node n = head;
+			while (n != null) {
+				Node following = n.nextInBucket;
+				int index = n.hash & (capacity - 1);
+				n.nextInBucket = this.buckets[index];
+				this.buckets[index] = n;
+				n = following;
+			}
+		}
+	}
+
+	/**
+	 * Adds every live cell of the node to the list.
+	 * @param node Node to read.
+	 * @param x Absolute x coordinate of the node's north-west corner.
+	 * @param y Absolute y coordinate of the node's north-west corner.
+	 * @param cells List receiving the cells.
+	 * @throws ArithmeticException if a live cell lies beyond the range of an
+	 * int, as an unbounded world may grow to after long enough.
+	 */
+	protected void collectCells(Node node, long x, long y, List<Cell> cells) {
+		if (node.population == 0) {
+			return;
+		}
+		if (node.level == 0) {
+			cells.add(new Cell(Math.toIntExact(x), Math.toIntExact(y)));
+			return;
+		}
+
+		long half = 1L << (node.level - 1);
+		this.collectCells(node.nw, x, y, cells);
+		this.collectCells(node.ne, x + half, y, cells);
+		this.collectCells(node.sw, x, y + half, cells);
+		this.collectCells(node.se, x + half, y + half, cells);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#getCurrentState()
+	 */
+	public List<Cell> getCurrentState() {
+		List<Cell> cells = new ArrayList<Cell>(Math.toIntExact(this.root.population));
+		long half = 1L << (this.root.level - 1);
+		this.collectCells(this.root, -half, -half, cells);
+		return cells;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#addLivingCell()
+	 */
+	public void addLivingCell(Cell livingCell) {
+		// ensure that this cell is a resident of the neighborhood
+		// if it isn't, don't bother with the needless computation
+		if (this.neighborhood.isResident(livingCell)) {
+			this.setCell(livingCell.x, livingCell.y, true);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see GameOfLifeSimulator#addLivingCells()
+	 */
+	public void addLivingCells(List<Cell> livingCells) {
+		for (Cell c : livingCells) {
+			this.addLivingCell(c);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#clearLivingCells()
+	 */
+	public void clearLivingCells() {
+		this.root = this.empty(MINIMUM_LEVEL);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#removeLivingCell(Cell)
+	 */
+	public void removeLivingCell(Cell livingCell) {
+		if (this.getCell(livingCell.x, livingCell.y)) {
+			this.setCell(livingCell.x, livingCell.y, false);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#removeLivingCells(java.util.List)
+	 */
+	public void removeLivingCells(List<Cell> livingCells) {
+		for (Cell c : livingCells) {
+			this.removeLivingCell(c);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#getLivingCellCount()
+	 */
+	public int getLivingCellCount() {
+		return Math.toIntExact(this.root.population);
+	}
+}
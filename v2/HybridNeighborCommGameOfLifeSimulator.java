@@ -0,0 +1,212 @@
+import java.io.File;
+
+import edu.rit.pj.BarrierAction;
+import edu.rit.pj.Comm;
+import edu.rit.pj.IntegerForLoop;
+import edu.rit.pj.ParallelRegion;
+import edu.rit.pj.ParallelTeam;
+
+
+/**
+ * HybridNeighborCommGameOfLifeSimulator is a NeighborCommGameOfLifeSimulator
+ * whose ranks each compute their local generation with a Parallel Team, so
+ * that a rank per node can keep all of the node's cores busy.  The calling
+ * thread trades borders with the neighboring ranks as before; the team then
+ * counts neighbors into a shared ConcurrentPackedCellTable, as
+ * SMPGameOfLifeSimulator does, and applies the births and deaths to the
+ * rank's living cells, which are already a concurrent map.  The rank's own
+ * cells are counted while the borders are in flight, and the border cells
+ * after they arrive.  The number of ranks and the threads per rank are chosen
+ * independently.
+ * @author Alex Maskovyak
+ *
+ */
+public class HybridNeighborCommGameOfLifeSimulator extends NeighborCommGameOfLifeSimulator {
+
+	//
+	// Private member variables
+	//
+
+	// neighbor count values carry this flag when the cell itself is alive
+	protected static final int ALIVE = 0x10;
+	protected static final int COUNT_MASK = 0x0F;
+
+	// each live cell counts toward itself and at most 8 neighbors
+	protected static final int CELLS_TOUCHED = 9;
+
+	protected ParallelTeam team;
+	protected CountRegion countRegion;
+	protected SettleRegion settleRegion;
+
+	// snapshot of the living cells, border cells included, for the team to
+	// share out
+	protected Cell[] cells;
+	protected int cellCount;
+
+	// neighbor counts for live cells and their neighbors
+	protected ConcurrentPackedCellTable neighborCounts;
+	protected NeighborVisitor counter;
+
+	// rules as neighbor count masks, bit n set for n neighbors
+	protected int survivalMask;
+	protected int birthMask;
+
+
+	/**
+	 * Constructor, exchanges borders every generation.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity.
+	 * @param commWorld Communicator holding every rank.
+	 * @param cellsFile File containing cells for simulation.
+	 * @param threadsPerRank Number of threads in each rank's Parallel Team.
+	 */
+	public HybridNeighborCommGameOfLifeSimulator(
+			CellLifeRules rules,
+			CellNeighborhood neighborhood,
+			Comm commWorld,
+			File cellsFile,
+			int threadsPerRank)
+	{
+		this(rules, neighborhood, commWorld, cellsFile, threadsPerRank, DEFAULT_GHOST_DEPTH);
+	}
+
+	/**
+	 * Constructor.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity.
+	 * @param commWorld Communicator holding every rank.
+	 * @param cellsFile File containing cells for simulation.
+	 * @param threadsPerRank Number of threads in each rank's Parallel Team.
+	 * @param ghostDepth Generations between border exchanges, or
+	 * AUTO_GHOST_DEPTH.
+	 */
+	public HybridNeighborCommGameOfLifeSimulator(
+			CellLifeRules rules,
+			CellNeighborhood neighborhood,
+			Comm commWorld,
+			File cellsFile,
+			int threadsPerRank,
+			int ghostDepth)
+	{
+		super(rules, neighborhood, commWorld, cellsFile, ghostDepth);
+
+		this.team = new ParallelTeam(threadsPerRank);
+		this.countRegion = new CountRegion();
+		this.settleRegion = new SettleRegion();
+
+		this.cells = new Cell[0];
+		this.neighborCounts =
+			new ConcurrentPackedCellTable(this.livingCells.size() * CELLS_TOUCHED);
+		this.counter = new NeighborVisitor() {
+			public void visit(int x, int y) {
+				neighborCounts.add(PackedCellTable.pack(x, y), 1);
+			}
+		};
+
+		// ask the rules about every count once, rather than once per cell
+		this.survivalMask = BitLifeKernel.survivalMask(rules);
+		this.birthMask = BitLifeKernel.birthMask(rules);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see NeighborCommGameOfLifeSimulator#simulateInterior()
+	 */
+	protected void simulateInterior() throws Exception {
+		// take a snapshot for the team, the map changes under it
+		this.cellCount = this.livingCells.size();
+		if (this.cells.length < this.cellCount) {
+			this.cells = new Cell[this.cellCount + this.cellCount / 2];
+		}
+		int i = 0;
+		for (Cell livingCell : this.livingCells.keySet()) {
+			this.cells[i++] = livingCell;
+		}
+		this.cellCount = i;
+
+		// the table can't grow while threads add to it
+		this.neighborCounts.ensureCapacity(this.cellCount * CELLS_TOUCHED);
+
+		this.team.execute(this.countRegion);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see NeighborCommGameOfLifeSimulator#simulateEdges()
+	 */
+	protected void simulateEdges() throws Exception {
+		// counts add up, so the border cells count on top of our own; there
+		// are too few of them to be worth the team
+		this.neighborCounts.ensureCapacity(
+				(this.cellCount + this.ghostCells.size()) * CELLS_TOUCHED);
+		for (Cell ghostCell : this.ghostCells) {
+			this.neighborCounts.add(PackedCellTable.pack(ghostCell.x, ghostCell.y), ALIVE);
+			this.neighborhood.visitNeighbors(ghostCell.x, ghostCell.y, this.counter);
+		}
+
+		this.team.execute(this.settleRegion);
+	}
+
+	/**
+	 * Counts the living cells of the snapshot toward themselves and their
+	 * neighbors, each thread taking a chunk of the cells.
+	 */
+	protected class CountRegion extends ParallelRegion {
+
+		public void run() throws Exception {
+			execute(0, cellCount - 1, new IntegerForLoop() {
+				public void run(int first, int last) throws Exception {
+					for (int i = first; i <= last; i++) {
+						Cell livingCell = cells[i];
+						neighborCounts.add(PackedCellTable.pack(livingCell.x, livingCell.y), ALIVE);
+						neighborhood.visitNeighbors(livingCell.x, livingCell.y, counter);
+
+						// let go of the cell, it may die
+						cells[i] = null;
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Applies the births and deaths of the counted cells once all counts
+	 * are final, each thread taking a chunk of the cells and emptying it.
+	 */
+	protected class SettleRegion extends ParallelRegion {
+
+		public void run() throws Exception {
+			execute(0, neighborCounts.size() - 1, new IntegerForLoop() {
+				public void run(int first, int last) throws Exception {
+					for (int i = first; i <= last; i++) {
+						int value = neighborCounts.valueAt(i);
+						int neighbors = value & COUNT_MASK;
+
+						if ((value & ALIVE) != 0) {
+							if (((survivalMask >>> neighbors) & 1) == 0) {
+								long key = neighborCounts.keyAt(i);
+								livingCells.remove(new Cell(
+										PackedCellTable.unpackX(key),
+										PackedCellTable.unpackY(key)));
+							}
+						}
+						else if (((birthMask >>> neighbors) & 1) != 0) {
+							long key = neighborCounts.keyAt(i);
+							Cell born = new Cell(
+									PackedCellTable.unpackX(key),
+									PackedCellTable.unpackY(key));
+							livingCells.put(born, born);
+						}
+					}
+
+					neighborCounts.emptyEntries(first, last);
+				}
+			},
+			new BarrierAction() {
+				public void run() throws Exception {
+					neighborCounts.resetSize();
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * Table-driven next-state computation.  The rules are compiled once into a
+ * 65536-entry table that maps every 4x4 block of cells to the next state of
+ * its 2x2 center, so four cells are advanced per lookup and the rules object
+ * is never consulted while simulating.
+ *
+ * Blocks are encoded with the cell at column x, row y of the block in bit
+ * y * 4 + x.  Results hold the center cells (1,1), (2,1), (1,2) and (2,2) in
+ * bits 0 through 3.
+ * @author Alex Maskovyak
+ *
+ */
+public class LookupLifeKernel {
+
+	//
+	// Private member variables
+	//
+	public static final int BLOCK_STATES = 1 << 16;
+
+	private final byte[] table;
+
+
+	/**
+	 * Constructor, compiles the rules into the lookup table.
+	 * @param rules Rules to determine a cell's next state.
+	 */
+	public LookupLifeKernel(CellLifeRules rules) {
+		this(BitLifeKernel.survivalMask(rules), BitLifeKernel.birthMask(rules));
+	}
+
+	/**
+	 * Constructor, compiles the rule masks into the lookup table.
+	 * @param survivalMask Neighbor counts at which live cells survive.
+	 * @param birthMask Neighbor counts at which dead cells are born.
+	 */
+	public LookupLifeKernel(int survivalMask, int birthMask) {
+		this.table = new byte[BLOCK_STATES];
+
+		for (int block = 0; block < BLOCK_STATES; ++block) {
+			int result = 0;
+
+			for (int i = 0; i < 4; ++i) {
+				int x = 1 + (i & 1);
+				int y = 1 + (i >> 1);
+
+				int neighbors = 0;
+				for (int dy = -1; dy <= 1; ++dy) {
+					for (int dx = -1; dx <= 1; ++dx) {
+						if (dx != 0 || dy != 0) {
+							neighbors += (block >>> ((y + dy) * 4 + x + dx)) & 1;
+						}
+					}
+				}
+
+				boolean alive = ((block >>> (y * 4 + x)) & 1) != 0;
+				int mask = alive ? survivalMask : birthMask;
+				result |= ((mask >>> neighbors) & 1) << i;
+			}
+
+			this.table[block] = (byte)result;
+		}
+	}
+
+	/**
+	 * Looks up the next state of a block's center.
+	 * @param block 4x4 block of cells, bit y * 4 + x.
+	 * @return 2x2 center one generation later, bits 0 through 3.
+	 */
+	public int next(int block) {
+		return this.table[block];
+	}
+
+	/**
+	 * Builds a 4x4 block out of four 2x2 quadrants, each encoded like a
+	 * lookup result.
+	 * @param nw North-west quadrant.
+	 * @param ne North-east quadrant.
+	 * @param sw South-west quadrant.
+	 * @param se South-east quadrant.
+	 * @return 4x4 block of cells, bit y * 4 + x.
+	 */
+	public static int block(int nw, int ne, int sw, int se) {
+		return  (nw & 0x3)       | ((nw & 0xC) << 2) |
+				((ne & 0x3) << 2) | ((ne & 0xC) << 4) |
+				((sw & 0x3) << 8) | ((sw & 0xC) << 10) |
+				((se & 0x3) << 10) | ((se & 0xC) << 12);
+	}
+}
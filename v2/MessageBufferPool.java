@@ -0,0 +1,78 @@
+import java.util.Arrays;
+
+
+/**
+ * MessageBufferPool holds on to the arrays a processor sends and receives
+ * messages in, so that they are allocated once and grown when a message
+ * outgrows them, rather than allocated for the largest possible message on
+ * every send and receive.  Arrays are kept in numbered slots, one for each
+ * message that may be in flight at the same time.
+ *
+ * Messages of cells are preceded by a one integer header holding their
+ * length, so that the receiver can grow its array to fit before the cells
+ * arrive.
+ * @author Alex Maskovyak
+ *
+ */
+public class MessageBufferPool {
+
+	//
+	// Private member variables
+	//
+
+	// arrays grow by half again, so a slowly growing message rarely grows
+	// them
+	protected static final int GROWTH_DIVISOR = 2;
+
+	protected Cell[][] cellBuffers;
+	protected int[][] intBuffers;
+
+
+	/**
+	 * Constructor.
+	 * @param slots Number of arrays of each kind that may be in use at the
+	 * same time.
+	 */
+	public MessageBufferPool(int slots) {
+		this.cellBuffers = new Cell[slots][0];
+		this.intBuffers = new int[slots][0];
+	}
+
+	/**
+	 * Retrieves the cell array of a slot, grown to hold the specified number
+	 * of cells.
+	 * @param slot Slot to take the array from.
+	 * @param length Number of cells the array must hold.
+	 * @return Array of at least the specified length.
+	 */
+	public Cell[] cells(int slot, int length) {
+		if (this.cellBuffers[slot].length < length) {
+			this.cellBuffers[slot] = new Cell[length + length / GROWTH_DIVISOR];
+		}
+		return this.cellBuffers[slot];
+	}
+
+	/**
+	 * Retrieves the int array of a slot, grown to hold the specified number
+	 * of ints.
+	 * @param slot Slot to take the array from.
+	 * @param length Number of ints the array must hold.
+	 * @return Array of at least the specified length.
+	 */
+	public int[] ints(int slot, int length) {
+		if (this.intBuffers[slot].length < length) {
+			this.intBuffers[slot] = new int[length + length / GROWTH_DIVISOR];
+		}
+		return this.intBuffers[slot];
+	}
+
+	/**
+	 * Drops the references a cell array holds once its cells have been taken
+	 * out, so that pooling it doesn't keep dead cells alive.
+	 * @param slot Slot of the array.
+	 * @param length Number of cells used.
+	 */
+	public void releaseCells(int slot, int length) {
+		Arrays.fill(this.cellBuffers[slot], 0, length, null);
+	}
+}
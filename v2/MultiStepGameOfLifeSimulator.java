@@ -0,0 +1,17 @@
+/**
+ * A simulator that can run several generations in a single call, and gains
+ * from doing so, for instance by not synchronizing between generations.
+ * Callers that know how many generations they want should prefer
+ * performSimulations over repeated calls to performSimulation.
+ * @author Alex Maskovyak
+ *
+ */
+public interface MultiStepGameOfLifeSimulator extends GameOfLifeSimulator {
+
+	/**
+	 * Simulate the cell interactions to produce the game of life state the
+	 * specified number of generations ahead.
+	 * @param generations Number of generations to advance, zero or more.
+	 */
+	public abstract void performSimulations(int generations) throws Exception;
+}
@@ -2,6 +2,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -9,6 +10,7 @@ import edu.rit.pj.CommRequest;
 import edu.rit.pj.CommStatus;
 import edu.rit.util.Range;
 import edu.rit.pj.Comm;
+import edu.rit.mp.IntegerBuf;
 import edu.rit.mp.ObjectBuf;
 
 
@@ -52,20 +54,92 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
 	// control message passing size
 	protected int largestSliceToReceive;
 	protected CommStatus receiveStatus;
+
+	// borders in flight from our neighbors, and those of their cells which
+	// were not already alive here
+	protected CommRequest leftNeighborRequest;
+	protected CommRequest rightNeighborRequest;
+	protected int[] leftNeighborBorder;
+	protected int[] rightNeighborBorder;
+	protected List<Cell> ghostCells;
+	protected long borderWaitTime;
+
+	// borders travel packed, a column wider than the ghost depth
+	protected BorderCodec borderCodec;
+	protected List<Cell> decodedBorder;
+
+	// pooled message arrays, and the sends still using our border arrays
+	protected static final int CELL_SLOT = 0;
+	protected static final int LEFT_SEND_SLOT = 0;
+	protected static final int RIGHT_SEND_SLOT = 1;
+	protected static final int LEFT_RECEIVE_SLOT = 2;
+	protected static final int RIGHT_RECEIVE_SLOT = 3;
+	protected static final int MESSAGE_SLOTS = 4;
+	protected MessageBufferPool messageBuffers;
+	protected CommRequest leftBorderRequest;
+	protected CommRequest rightBorderRequest;
+
+	// borders as last sent to each neighbor and as last received from each,
+	// so that only their changes need to travel
+	protected BorderCopy leftBorderSent;
+	protected BorderCopy rightBorderSent;
+	protected BorderCopy leftNeighborCopy;
+	protected BorderCopy rightNeighborCopy;
+	protected Set<Cell> currentBorder;
+	protected List<Cell> borderChanges;
+
+	// ghost depth: borders are exchanged every ghostDepth generations, deep
+	// enough for that many generations to be computed locally in between
+	public static final String GHOST_DEPTH_PROPERTY = "gol.ghostDepth";
+	public static final String AUTO_GHOST_DEPTH_VALUE = "auto";
+	public static final int DEFAULT_GHOST_DEPTH = 1;
+	public static final int AUTO_GHOST_DEPTH = 0;
+	public static final int MAX_GHOST_DEPTH = 32;
+	protected int ghostDepth;
+	protected int generationsSinceExchange;
+
+	// with an automatic depth, generations at depth 1 are timed before the
+	// depth is chosen
+	protected static final int CALIBRATION_GENERATIONS = 8;
+	protected boolean calibrating;
+	protected int calibratedGenerations;
+	protected long exchangeTime;
+	protected long computeTime;
 	
    
 	
 	/**
-	 * Constructor.
-	 * @param liveCells List of live cells to manage.
+	 * Constructor, exchanges borders every generation.
 	 * @param rules Rules to determine a cell's next state.
 	 * @param neighborhood Determines cell connectivity.
+	 * @param commWorld Communicator holding every processor.
+	 * @param cellsFile File containing cells for simulation.
 	 */
 	public NeighborCommGameOfLifeSimulator(
 			CellLifeRules rules, 
 			CellNeighborhood neighborhood,
 			Comm commWorld,
 			File cellsFile)	
+	{
+		this(rules, neighborhood, commWorld, cellsFile, DEFAULT_GHOST_DEPTH);
+	}
+
+	/**
+	 * Constructor.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity.
+	 * @param commWorld Communicator holding every processor.
+	 * @param cellsFile File containing cells for simulation.
+	 * @param ghostDepth Generations between border exchanges, from 1 to
+	 * MAX_GHOST_DEPTH, or AUTO_GHOST_DEPTH to choose one from timings.  Every
+	 * strip must be wider than the depth.
+	 */
+	public NeighborCommGameOfLifeSimulator(
+			CellLifeRules rules, 
+			CellNeighborhood neighborhood,
+			Comm commWorld,
+			File cellsFile,
+			int ghostDepth)	
 	{
 		// call superconstructor
 		super(new ArrayList<Cell>(), rules, neighborhood);
@@ -82,6 +156,17 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
 		this.borderCells = new HashMap<Cell, Cell>();
 		this.leftBorder = new ArrayList<Cell>(this.largestSliceToReceive);
 		this.rightBorder = new ArrayList<Cell>(this.largestSliceToReceive);
+		this.ghostCells = new ArrayList<Cell>();
+		this.leftNeighborRequest = new CommRequest();
+		this.rightNeighborRequest = new CommRequest();
+		this.decodedBorder = new ArrayList<Cell>();
+		this.messageBuffers = new MessageBufferPool(MESSAGE_SLOTS);
+		this.leftBorderSent = new BorderCopy();
+		this.rightBorderSent = new BorderCopy();
+		this.leftNeighborCopy = new BorderCopy();
+		this.rightNeighborCopy = new BorderCopy();
+		this.currentBorder = new HashSet<Cell>();
+		this.borderChanges = new ArrayList<Cell>();
 
 		// set border information
 		this.leftBorderYBound = Integer.MAX_VALUE;
@@ -95,7 +180,10 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
 		this.assignNeighborBorderIDs();
 
 		// distribute information
-		if (this.processorRank == this.MASTERRANK) {
+		if (DistributedCellLoader.isParallelLoad()) {
+			this.loadInParallel(cellsFile);
+		}
+		else if (this.processorRank == this.MASTERRANK) {
 			List<Cell> livingCells = GameOfLifeFileIO.getLiveCells(cellsFile);
 			this.distributeDataToWorkers(livingCells);
 			this.leftBorderYBound = (int)this.neighborhood.getBounds().getMinY();
@@ -108,9 +196,110 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
 		}
 		
 		//System.out.printf("%d has left border %d, right border %d\n", this.processorRank, this.leftBorderYBound, this.rightBorderYBound);
+
+		// every processor must agree on the depth, as they exchange together
+		if (ghostDepth == AUTO_GHOST_DEPTH) {
+			this.calibrating = true;
+			this.setGhostDepth(DEFAULT_GHOST_DEPTH);
+		}
+		else if (ghostDepth < 1 || ghostDepth > MAX_GHOST_DEPTH) {
+			throw new IllegalArgumentException(
+					"Ghost depth must be from 1 to " + MAX_GHOST_DEPTH + ": " + ghostDepth);
+		}
+		else if (ghostDepth > 1 && this.agreeOnGhostDepth(ghostDepth) < ghostDepth) {
+			throw new IllegalArgumentException(
+					"Ghost depth " + ghostDepth + " is not less than the narrowest strip's width.");
+		}
+		else {
+			this.setGhostDepth(ghostDepth);
+		}
+	}
+
+	/**
+	 * Reads the ghost depth from the gol.ghostDepth property.
+	 * @return Ghost depth, AUTO_GHOST_DEPTH if the property is "auto", or
+	 * DEFAULT_GHOST_DEPTH if it is unset.
+	 */
+	public static int ghostDepthProperty() {
+		String depth = System.getProperty(GHOST_DEPTH_PROPERTY);
+		if (depth == null) {
+			return DEFAULT_GHOST_DEPTH;
+		}
+		if (AUTO_GHOST_DEPTH_VALUE.equals(depth)) {
+			return AUTO_GHOST_DEPTH;
+		}
+		return Integer.parseInt(depth);
 	}
    
 	
+	/**
+	 * Every processor reads its share of the file, the processors agree on
+	 * strips holding about as many cells each, and the cells are traded to
+	 * the processors whose strips they lie in.  Side effects: defines this
+	 * processor's border bounds, which do not overlap its neighbors'.
+	 * @param cellsFile File containing cells for simulation.
+	 */
+	protected void loadInParallel(File cellsFile) {
+		DistributedCellLoader loader = new DistributedCellLoader(this.commWorld, cellsFile);
+		List<Cell> parsedCells = loader.readShare();
+
+		int minY = (int)this.neighborhood.getBounds().getMinY();
+		int columns = this.neighborhood.getBounds().height;
+		if (columns < this.numProcessors) {
+			throw new IllegalArgumentException(
+					"The world is too narrow for a strip on each of " + this.numProcessors + " processors.");
+		}
+
+		try {
+			// cells before each column, over the whole file
+			int[] columnCounts = loader.countColumns(parsedCells, minY, columns);
+			long[] cellsBefore = new long[columns + 1];
+			for (int column = 0; column < columns; ++column) {
+				cellsBefore[column + 1] = cellsBefore[column] + columnCounts[column];
+			}
+			long totalCells = cellsBefore[columns];
+
+			// each strip starts where its share of the cells does, and is at
+			// least a column wide
+			int[] firstColumns = new int[this.numProcessors + 1];
+			firstColumns[this.numProcessors] = columns;
+			int column = 0;
+			for (int rank = 1; rank < this.numProcessors; ++rank) {
+				long target = totalCells * rank / this.numProcessors;
+				while (column < columns && cellsBefore[column] < target) {
+					++column;
+				}
+				column = Math.max(column, firstColumns[rank - 1] + 1);
+				column = Math.min(column, columns - (this.numProcessors - rank));
+				firstColumns[rank] = column;
+			}
+
+			List<List<Cell>> ownedCells = new ArrayList<List<Cell>>(this.numProcessors);
+			int[] owners = new int[columns];
+			for (int rank = 0; rank < this.numProcessors; ++rank) {
+				ownedCells.add(new ArrayList<Cell>());
+				for (column = firstColumns[rank]; column < firstColumns[rank + 1]; ++column) {
+					owners[column] = rank;
+				}
+			}
+			for (Cell c : parsedCells) {
+				if (this.neighborhood.isResident(c)) {
+					ownedCells.get(owners[c.y - minY]).add(c);
+				}
+			}
+			parsedCells = null;
+
+			this.addLivingCells(loader.exchange(ownedCells));
+
+			this.leftBorderYBound = minY + firstColumns[this.processorRank];
+			this.rightBorderYBound = minY + firstColumns[this.processorRank + 1] - 1;
+		}
+		catch (IOException e) {
+			System.out.println("Processor: " + this.processorRank + " could not " +
+					"exchange loaded cells");
+		}
+	}
+
 	/** 
 	 * Master Processor method to send Living Cell Slices to each available 
 	 * Worker Processor.
@@ -121,11 +310,15 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
 		Cell[] livingCellHolder = livingCells.toArray(new Cell[livingCells.size()]);
             
 		ObjectBuf<Cell>[] livingCellSlices = ObjectBuf.sliceBuffers(livingCellHolder, colRanges);
-		CommRequest request = new CommRequest();
       
 		for (int nDestProcessorRank = 1; nDestProcessorRank < this.numProcessors; nDestProcessorRank++) {
 			try {
-				this.commWorld.send(nDestProcessorRank, livingCellSlices[nDestProcessorRank], request);
+				// the slice's length goes first, so the worker can size for it;
+				// both go out before our own slice's cells are touched
+				this.commWorld.send(
+						nDestProcessorRank,
+						IntegerBuf.buffer(livingCellSlices[nDestProcessorRank].length()));
+				this.commWorld.send(nDestProcessorRank, livingCellSlices[nDestProcessorRank]);
 			}
 			catch (IOException e) {
 				System.out.println("Could not send to Processor: " + nDestProcessorRank);
@@ -151,20 +344,19 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
     */
 	public void receiveDataFromMaster()
 	{
-		//
-		// Only allocate for the largest possible slice.
-		//
-      
-		Cell[] receiveCellBuffer = new Cell[this.largestSliceToReceive];
-      
-		//
-		// Wait for data from the Master before proceeding.
-		//
-
-		ObjectBuf<Cell> livingCellsToReceive = ObjectBuf.buffer(receiveCellBuffer);
 		this.receiveStatus = null;
       
 		try {
+			//
+			// Wait for data from the Master before proceeding, allocating
+			// only for the slice it tells us is coming.
+			//
+
+			IntegerBuf sliceLength = IntegerBuf.buffer();
+			this.commWorld.receive(0, sliceLength);
+
+			ObjectBuf<Cell> livingCellsToReceive = ObjectBuf.buffer(
+					this.messageBuffers.cells(CELL_SLOT, sliceLength.get(0)));
 			this.receiveStatus = this.commWorld.receive(0, livingCellsToReceive);
 			//System.out.println("Processor: " + this.myProcessorRank + " received data of size " + receiveStatus.length);
          
@@ -181,6 +373,7 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
 				this.updateBorderBounds(currentCell);
 				this.addLivingCell(currentCell);
 			}
+			this.messageBuffers.releaseCells(CELL_SLOT, this.receiveStatus.length);
 			
 		}
 		catch (IOException e) {
@@ -189,7 +382,8 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
 	}
 	/**
 	 * Retrieves a buffer of live cells from the specified neighbor using the 
-	 * provided tag.
+	 * provided tag.  The buffer is pooled and only holds the cells until the
+	 * next receive.
 	 * @param neighborRank Neighbor from which to receive cells.
 	 * @param tag Non-zero rank of neighbor from which to receive.
 	 * @return Living cells from the provided neighbor.
@@ -203,13 +397,16 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
 			return null;
 		}
 		
-		// allocate for the largest possible slice
-		Cell[] receiveCellBuffer = new Cell[this.largestSliceToReceive];
-			
-		ObjectBuf<Cell> livingCellsToReceive = ObjectBuf.buffer(receiveCellBuffer);
+		ObjectBuf<Cell> livingCellsToReceive = null;
 		this.receiveStatus = null;
 		
 		try {
+			// the length comes first, so only grow the buffer as needed
+			IntegerBuf length = IntegerBuf.buffer();
+			this.commWorld.receive(neighborRank, tag, length);
+
+			livingCellsToReceive = ObjectBuf.buffer(
+					this.messageBuffers.cells(CELL_SLOT, length.get(0)));
 			this.receiveStatus = this.commWorld.receive(
 					neighborRank, 
 					tag,
@@ -242,14 +439,17 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
 		Cell[] livingCellArray = liveCells.toArray(new Cell[liveCells.size()]);
 
 		ObjectBuf<Cell> livingBorderCellSlices = ObjectBuf.buffer(livingCellArray);
-		CommRequest request = new CommRequest();
 
 		try {
+			// block until both are out, we go on to change the cells
+			this.commWorld.send(
+					neighborRank,
+					tag,
+					IntegerBuf.buffer(livingCellArray.length));
 			this.commWorld.send(
 					neighborRank, 
 					tag, 
-					livingBorderCellSlices,
-					request);
+					livingBorderCellSlices);
 	            
 		}
 		catch (IOException e) {
@@ -263,41 +463,427 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
 	 * @see GameOfLifeSimulator#performSimulation()
 	 */
 	public void performSimulation() throws Exception {
+		if (this.generationsSinceExchange == 0) {
+			// send our borders and post receives for our neighbors'
+			long start = System.nanoTime();
+			this.beginBorderExchange();
+
+			// count our own cells while the borders are in flight
+			long sent = System.nanoTime();
+			this.simulateInterior();
+
+			// take in our neighbors' borders
+			long counted = System.nanoTime();
+			this.finishBorderExchange();
+
+			// count the border cells and settle every cell's fate
+			long received = System.nanoTime();
+			this.simulateEdges();
+
+			this.exchangeTime += (sent - start) + (received - counted);
+			this.computeTime += (counted - sent) + (System.nanoTime() - received);
+		}
+		else {
+			// the ghosts from the last exchange are still deep enough to
+			// simulate alongside our own cells
+			this.ghostCells.clear();
+			this.simulateInterior();
+			this.simulateEdges();
+		}
+
+		// drop what our neighbors are responsible for once the ghosts are
+		// used up
+		if (++this.generationsSinceExchange == this.ghostDepth) {
+			this.discardForeignCells();
+			this.generationsSinceExchange = 0;
+
+			if (this.calibrating && ++this.calibratedGenerations == CALIBRATION_GENERATIONS) {
+				this.calibrating = false;
+				this.setGhostDepth(this.agreeOnGhostDepth(this.modelGhostDepth()));
+			}
+		}
+	}
+
+	/**
+	 * Picks the ghost depth which minimizes the modeled cost of a generation
+	 * from the timings taken so far at depth 1.  An exchange costs latency
+	 * L every k generations, while each generation costs compute C plus the
+	 * ghost columns computed redundantly, on average k - 1 beside a strip w
+	 * columns wide:
+	 *
+	 *    L / k + C (1 + (k - 1) / w)
+	 *
+	 * which is least at k = sqrt(L w / C).
+	 * @return Modeled best ghost depth for this processor.
+	 */
+	protected int modelGhostDepth() {
+		double latency = (double)this.exchangeTime / this.calibratedGenerations;
+		double compute = Math.max((double)this.computeTime / this.calibratedGenerations, 1.0);
+		int width = Math.max(this.rightBorderYBound - this.leftBorderYBound + 1, 1);
+
+		int depth = (int)Math.round(Math.sqrt(latency * width / compute));
+		return Math.max(1, Math.min(depth, MAX_GHOST_DEPTH));
+	}
+
+	/**
+	 * Agrees on a ghost depth with every other processor: the smallest
+	 * proposed, and less than the narrowest strip's width so that our
+	 * neighbors' borders hold every ghost column we need.  Every processor
+	 * must call this together.
+	 * @param proposedDepth Depth this processor would like.
+	 * @return Depth every processor agrees on, at least 1.
+	 */
+	protected int agreeOnGhostDepth(int proposedDepth) {
+		int[] proposal = new int[] {
+			this.rightBorderYBound - this.leftBorderYBound + 1,
+			proposedDepth };
+
+		IntegerBuf[] proposals = new IntegerBuf[this.numProcessors];
+		for (int rank = 0; rank < this.numProcessors; ++rank) {
+			proposals[rank] = IntegerBuf.buffer(new int[proposal.length]);
+		}
+
+		try {
+			this.commWorld.allGather(IntegerBuf.buffer(proposal), proposals);
+		}
+		catch (IOException e) {
+			System.out.println("Processor: " + this.processorRank + " could not " +
+					"agree on a ghost depth");
+			return DEFAULT_GHOST_DEPTH;
+		}
+
+		int depth = MAX_GHOST_DEPTH;
+		for (IntegerBuf agreed : proposals) {
+			depth = Math.min(depth, Math.min(agreed.get(0) - 1, agreed.get(1)));
+		}
+		return Math.max(depth, 1);
+	}
+
+	/**
+	 * Sets the ghost depth, between exchanges.  The next borders are sent
+	 * whole.
+	 * @param ghostDepth Generations between border exchanges.
+	 */
+	protected void setGhostDepth(int ghostDepth) {
+		this.ghostDepth = ghostDepth;
+		this.borderCodec = new BorderCodec(
+				this.neighborhood.getBounds().x,
+				this.neighborhood.getBounds().width,
+				ghostDepth + 1);
+
+		this.leftBorderSent.valid = false;
+		this.rightBorderSent.valid = false;
+	}
+
+	/**
+	 * Retrieves the ghost depth in use.
+	 * @return Generations between border exchanges.
+	 */
+	public int getGhostDepth() {
+		return this.ghostDepth;
+	}
+
+	/**
+	 * Sends our border cells to our neighbors and posts non-blocking
+	 * receives for theirs, so that the messages travel while we compute.
+	 */
+	protected void beginBorderExchange() {
 		// update left and right border cell lists
 		this.updateBorderCellLists();
-		
-		// send our left border, receive someone else's left border
-		this.sendLiveCells(this.leftProcessorRank, LEFT_BORDER_TAG, this.leftBorder);
-		
-		this.receiveStatus = null;
-		ObjectBuf<Cell> borderCells = this.receiveLiveCells(this.rightProcessorRank, LEFT_BORDER_TAG);
 
-		
-        for (int i = 0; this.receiveStatus != null && i < this.receiveStatus.length; i++) {
-        	Cell currentCell = borderCells.get(i);
-            if (currentCell != null) {
-            	this.borderCells.put(currentCell, currentCell);
-            	this.addLivingCell(currentCell);
-            }
-        }
-		
-        // our right border, receive someone else's right border
-        this.sendLiveCells(this.rightProcessorRank, RIGHT_BORDER_TAG, this.rightBorder);
-        
-        this.receiveStatus = null;
-        borderCells = this.receiveLiveCells(this.leftProcessorRank, RIGHT_BORDER_TAG);
-        
-        for (int i = 0; this.receiveStatus != null && i < this.receiveStatus.length; i++) {
-        	Cell currentCell = borderCells.get(i);
-            if (currentCell != null) {
-            	this.borderCells.put(currentCell, currentCell);
-            	this.addLivingCell(currentCell);
-            }
-        }
+		// our left border goes to our left neighbor, and their right border
+		// comes back, likewise to the right
+		this.leftBorderRequest = this.sendBorder(
+				this.leftProcessorRank, LEFT_BORDER_TAG,
+				this.leftBorder, this.leftBorderYBound, this.leftBorderSent,
+				LEFT_SEND_SLOT, this.leftBorderRequest);
+		this.rightBorderRequest = this.sendBorder(
+				this.rightProcessorRank, RIGHT_BORDER_TAG,
+				this.rightBorder, this.rightBorderYBound - this.ghostDepth, this.rightBorderSent,
+				RIGHT_SEND_SLOT, this.rightBorderRequest);
 
-        // simulate with all information
-        super.performSimulation();
-	
+		this.rightNeighborBorder = this.postReceiveBorder(
+				this.rightProcessorRank, LEFT_BORDER_TAG,
+				RIGHT_RECEIVE_SLOT, this.rightNeighborRequest);
+		this.leftNeighborBorder = this.postReceiveBorder(
+				this.leftProcessorRank, RIGHT_BORDER_TAG,
+				LEFT_RECEIVE_SLOT, this.leftNeighborRequest);
+	}
+
+	/**
+	 * Encodes a border and sends it to the specified neighbor.  Only the
+	 * cells born into or died out of the border since it was last sent go,
+	 * unless the border moved or the changes outnumber its cells.
+	 * @param neighborRank Neighbor who is to receive the border.
+	 * @param tag Tag with which to send the border.
+	 * @param border Living cells of the border.
+	 * @param firstColumn Y coordinate of the border's first column.
+	 * @param sent The border as last sent, updated to this one.
+	 * @param slot Pool slot of the array to encode into.
+	 * @param previousRequest Request tracking the last send from that
+	 * array, or null if there was none.
+	 * @return Request tracking this send, or null if there was none.
+	 */
+	protected CommRequest sendBorder(
+			int neighborRank,
+			int tag,
+			List<Cell> border,
+			int firstColumn,
+			BorderCopy sent,
+			int slot,
+			CommRequest previousRequest)
+	{
+		// fail fast
+		if (neighborRank == this.NON_NEIGHBOR) {
+			return null;
+		}
+
+		CommRequest request = new CommRequest();
+		try {
+			// the pooled array may still be going out from last generation
+			if (previousRequest != null) {
+				previousRequest.waitForFinish();
+			}
+
+			int[] message = this.messageBuffers.ints(slot, this.borderCodec.maxEncodedLength());
+			int length;
+			if (this.findBorderChanges(border, firstColumn, sent)) {
+				length = this.borderCodec.encodeChanges(this.borderChanges, firstColumn, message);
+			}
+			else {
+				length = this.borderCodec.encode(border, firstColumn, message);
+			}
+			this.commWorld.send(
+					neighborRank,
+					tag,
+					IntegerBuf.sliceBuffer(message, new Range(0, length - 1)),
+					request);
+		}
+		catch (IOException e) {
+			System.out.println("Processor: " + this.processorRank + " could not " +
+					"send border to Processor: " + neighborRank);
+		}
+		return request;
+	}
+
+	/**
+	 * Compares a border to the copy last sent, then makes the copy this
+	 * border.  Side effects: the cells which changed are left in
+	 * borderChanges.
+	 * @param border Living cells of the border.
+	 * @param firstColumn Y coordinate of the border's first column.
+	 * @param sent The border as last sent.
+	 * @return True if sending the changes beats sending the whole border.
+	 */
+	protected boolean findBorderChanges(List<Cell> border, int firstColumn, BorderCopy sent) {
+		this.borderChanges.clear();
+		this.currentBorder.clear();
+		this.currentBorder.addAll(border);
+
+		boolean sendChanges = sent.valid && sent.firstColumn == firstColumn;
+		if (sendChanges) {
+			// births
+			for (Cell c : border) {
+				if (!sent.cells.contains(c)) {
+					this.borderChanges.add(c);
+				}
+			}
+			// deaths
+			for (Cell c : sent.cells) {
+				if (!this.currentBorder.contains(c)) {
+					this.borderChanges.add(c);
+				}
+			}
+			sendChanges = this.borderChanges.size() < border.size();
+		}
+
+		// the copy becomes this border, keeping the old set for next time
+		Set<Cell> previous = sent.cells;
+		sent.cells = this.currentBorder;
+		sent.firstColumn = firstColumn;
+		sent.valid = true;
+		this.currentBorder = previous;
+
+		return sendChanges;
+	}
+
+	/**
+	 * Posts a non-blocking receive for an encoded border from the specified
+	 * neighbor using the provided tag.
+	 * @param neighborRank Neighbor from which to receive the border.
+	 * @param tag Tag the neighbor sends the border with.
+	 * @param slot Pool slot of the array to receive into.
+	 * @param request Request to track the receive with.
+	 * @return Array the border will arrive in, or null if there is no
+	 * neighbor.
+	 */
+	protected int[] postReceiveBorder(
+			int neighborRank,
+			int tag,
+			int slot,
+			CommRequest request)
+	{
+		// fail fast
+		if (neighborRank == this.NON_NEIGHBOR) {
+			return null;
+		}
+
+		// room for the longest possible border
+		int[] message = this.messageBuffers.ints(slot, this.borderCodec.maxEncodedLength());
+
+		try {
+			this.commWorld.receive(neighborRank, tag, IntegerBuf.buffer(message), request);
+		}
+		catch (IOException e) {
+			System.out.printf(
+					"Processor: %d could not receive border from Processor: %d\n",
+					this.processorRank, neighborRank);
+			return null;
+		}
+
+		return message;
+	}
+
+	/**
+	 * Counts the neighbors of our own cells, none of which depend on our
+	 * neighbors' borders.  Runs while the borders are in flight.
+	 * @throws Exception
+	 */
+	protected void simulateInterior() throws Exception {
+		this.cleanCellCounts();
+		this.updateCellCounts();
+	}
+
+	/**
+	 * Waits for our neighbors' borders and adds them to our living cells.
+	 * Side effects: those not already alive here are listed in ghostCells.
+	 */
+	protected void finishBorderExchange() {
+		this.ghostCells.clear();
+		this.addBorderCells(
+				this.rightNeighborBorder, this.rightNeighborRequest, this.rightNeighborCopy);
+		this.addBorderCells(
+				this.leftNeighborBorder, this.leftNeighborRequest, this.leftNeighborCopy);
+		this.rightNeighborBorder = null;
+		this.leftNeighborBorder = null;
+	}
+
+	/**
+	 * Waits for a posted receive to finish, brings our copy of the
+	 * neighbor's border up to date, and adds the border's cells.
+	 * @param border Array the border arrives in, null if there was no
+	 * receive.
+	 * @param request Request tracking the receive.
+	 * @param copy Our copy of the neighbor's border.
+	 */
+	protected void addBorderCells(int[] border, CommRequest request, BorderCopy copy) {
+		if (border == null) {
+			return;
+		}
+
+		long waitStart = System.nanoTime();
+		try {
+			this.receiveStatus = request.waitForFinish();
+		}
+		catch (IOException e) {
+			System.out.println("Processor: " + this.processorRank + " could not " +
+					"receive a border");
+			return;
+		}
+		finally {
+			this.borderWaitTime += System.nanoTime() - waitStart;
+		}
+
+		this.decodedBorder.clear();
+		this.borderCodec.decode(border, this.decodedBorder);
+
+		if (BorderCodec.isChanges(border)) {
+			// each changed cell was either born or died
+			for (Cell changedCell : this.decodedBorder) {
+				if (!copy.cells.remove(changedCell)) {
+					copy.cells.add(changedCell);
+				}
+			}
+		}
+		else {
+			copy.cells.clear();
+			copy.cells.addAll(this.decodedBorder);
+		}
+
+		for (Cell currentCell : copy.cells) {
+			this.borderCells.put(currentCell, currentCell);
+			if (!this.livingCells.containsKey(currentCell) &&
+				this.neighborhood.isResident(currentCell)) {
+				this.livingCells.put(currentCell, currentCell);
+				this.ghostCells.add(currentCell);
+			}
+		}
+	}
+
+	/**
+	 * Adds the border cells to the neighbor counts of our own cells, then
+	 * determines which cells live and die.
+	 * @throws Exception
+	 */
+	protected void simulateEdges() throws Exception {
+		// a border cell was counted as gestating until it arrived
+		for (Cell ghostCell : this.ghostCells) {
+			Cell gestatingCell = this.gestatingCells.remove(ghostCell);
+			ghostCell.neighborCount = (gestatingCell == null) ? 0 : gestatingCell.neighborCount;
+		}
+
+		NeighborCounter counter = new NeighborCounter();
+		for (Cell ghostCell : this.ghostCells) {
+			this.neighborhood.visitNeighbors(ghostCell.x, ghostCell.y, counter);
+		}
+
+		this.updateLiveCellList();
+	}
+
+	/* 
+	 * (non-Javadoc)
+	 * @see SequentialGameOfLifeSimulator#getCurrentState()
+	 */
+	public List<Cell> getCurrentState() {
+		if (this.generationsSinceExchange == 0) {
+			return super.getCurrentState();
+		}
+
+		// between exchanges we also hold our neighbors' evolving cells
+		List<Cell> cells = new ArrayList<Cell>();
+		for (Cell c : this.livingCells.keySet()) {
+			if (c.y >= this.leftBorderYBound && c.y <= this.rightBorderYBound) {
+				cells.add(c);
+			}
+		}
+		return cells;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see SequentialGameOfLifeSimulator#getLivingCellCount()
+	 */
+	public int getLivingCellCount() {
+		if (this.generationsSinceExchange == 0) {
+			return super.getLivingCellCount();
+		}
+		return this.getCurrentState().size();
+	}
+
+	/**
+	 * Determines how long this processor has spent waiting for its
+	 * neighbors' borders to arrive.
+	 * @return Total wait, in nanoseconds.
+	 */
+	public long getBorderWaitTime() {
+		return this.borderWaitTime;
+	}
+
+	/**
+	 * Removes the border cells received from our neighbors, along with any
+	 * cells that fall outside of our bounds.
+	 */
+	protected void discardForeignCells() {
 		// clear the border cells
 		for (Cell c : this.borderCells.keySet()) {
 			// check to determine whether this is a shared border cell
@@ -340,6 +926,21 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
 		
 	}
 
+	/**
+	 * A border as one side of an exchange last saw it.
+	 */
+	protected static class BorderCopy {
+
+		// living cells of the border
+		protected Set<Cell> cells = new HashSet<Cell>();
+
+		// y coordinate of the border's first column
+		protected int firstColumn;
+
+		// false until the border has been sent whole once
+		protected boolean valid;
+	}
+
    	/**
    	 * Retrieves this Processor's Rank relative to the PJ Comm World.
    	 */
@@ -357,13 +958,18 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
    	
    	/**
    	 * Determine this processor's neighbors.  Side effects: defines 
-   	 * leftProcessorRank and rightProcessorRank.
+   	 * leftProcessorRank and rightProcessorRank.  In a wrapping world the
+   	 * processors form a ring, the first and last being neighbors.
    	 */
    	private void assignNeighborBorderIDs() {
+   		boolean ring = this.neighborhood.isWrapping() && this.numProcessors > 1;
+   		
    		// compute left neighbor
 		if (this.processorRank - 1 == -1) {
-			// No Wrapping for now, so make leftmost processor's left neighbor invalid.
-			this.leftProcessorRank = NeighborCommGameOfLifeSimulator.NON_NEIGHBOR;
+			// Wrap around to the rightmost processor on a torus, otherwise
+			// make leftmost processor's left neighbor invalid.
+			this.leftProcessorRank = ring ? 
+				this.numProcessors - 1 : NeighborCommGameOfLifeSimulator.NON_NEIGHBOR;
 		}	
 		else {
 			this.leftProcessorRank = (this.processorRank - 1) % this.numProcessors;
@@ -371,8 +977,10 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
       
 		// compute right neighbor
 		if (this.processorRank + 1 == this.numProcessors) {
-			// No Wrapping for now, so make rightmost processor's right neighbor invalid.
-			this.rightProcessorRank = NeighborCommGameOfLifeSimulator.NON_NEIGHBOR;
+			// Wrap around to the leftmost processor on a torus, otherwise
+			// make rightmost processor's right neighbor invalid.
+			this.rightProcessorRank = ring ? 
+				0 : NeighborCommGameOfLifeSimulator.NON_NEIGHBOR;
 		}
 		else {
 			this.rightProcessorRank = (this.processorRank + 1) % this.numProcessors;
@@ -399,7 +1007,8 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
 		//
 		// Create left and right borders to send. Since the leftmost and
 		// or rightmost border values may be the same as in other processors,
-		// create a (+/- 1) buffer for determining them.
+		// create a (+/- 1) buffer for determining them, on top of the ghost
+		// depth.
 		//
       
 		this.leftBorder.clear();
@@ -407,13 +1016,13 @@ public class NeighborCommGameOfLifeSimulator extends SequentialGameOfLifeSimulat
 		
 		Set<Cell> cells = super.livingCells.keySet();
 		for (Cell currentCell : cells) {
-			if ((currentCell.y == this.leftBorderYBound) ||
-					(currentCell.y == this.leftBorderYBound + 1))
+			if ((currentCell.y >= this.leftBorderYBound) &&
+					(currentCell.y <= this.leftBorderYBound + this.ghostDepth))
 			{
 				this.leftBorder.add(currentCell);
 			}
-			if ((currentCell.y == this.rightBorderYBound) || 
-					(currentCell.y == this.rightBorderYBound - 1)) 
+			if ((currentCell.y <= this.rightBorderYBound) && 
+					(currentCell.y >= this.rightBorderYBound - this.ghostDepth)) 
 			{
 				this.rightBorder.add(currentCell);
 			}
@@ -0,0 +1,16 @@
+/**
+ * Receives the coordinates of neighboring cells from
+ * CellNeighborhood.visitNeighbors, one call per neighbor, so neighbors can be
+ * walked without creating Cell objects or lists.
+ * @author Alex Maskovyak
+ *
+ */
+public interface NeighborVisitor {
+
+	/**
+	 * Called once for each neighbor residing in the neighborhood.
+	 * @param x X coordinate of the neighbor.
+	 * @param y Y coordinate of the neighbor.
+	 */
+	public abstract void visit(int x, int y);
+}
@@ -0,0 +1,256 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table of cell coordinates packed into a single long
+ * key, with a parallel byte value for each key.  The table is meant to be
+ * reused from generation to generation: rather than zeroing its arrays,
+ * clear() advances an epoch counter and any slot stamped with an older epoch
+ * is treated as empty.  Slots claimed in the current epoch are also recorded
+ * in an index list so that callers can walk the occupied entries without
+ * scanning the whole table.
+ * @author Alex Maskovyak
+ *
+ */
+public class PackedCellTable {
+
+	//
+	// private fields
+	//
+	private static final int DEFAULT_CAPACITY = 1 << 10;
+	private static final float MAX_LOAD = 0.5f;
+
+	// slot storage
+	private long[] keys;
+	private byte[] values;
+	private int[] stamps;
+	private int mask;
+
+	// slots in use for the current epoch, in order of insertion
+	private int[] used;
+	private int size;
+
+	// current epoch, slots stamped with anything else are empty
+	private int epoch;
+
+
+	/**
+	 * Default constructor.
+	 */
+	public PackedCellTable() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor.
+	 * @param expectedCells Number of cells expected to be stored at once.
+	 */
+	public PackedCellTable(int expectedCells) {
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity * MAX_LOAD < expectedCells) {
+			capacity <<= 1;
+		}
+		this.allocate(capacity);
+		this.epoch = 1;
+	}
+
+	/**
+	 * Packs the specified coordinates into a single key.
+	 * @param x X coordinate value.
+	 * @param y Y coordinate value.
+	 * @return Key holding both coordinates.
+	 */
+	public static long pack(int x, int y) {
+		return ((long)x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Extracts the x coordinate from a packed key.
+	 * @param key Key created by pack.
+	 * @return X coordinate value.
+	 */
+	public static int unpackX(long key) {
+		return (int)(key >> 32);
+	}
+
+	/**
+	 * Extracts the y coordinate from a packed key.
+	 * @param key Key created by pack.
+	 * @return Y coordinate value.
+	 */
+	public static int unpackY(long key) {
+		return (int)key;
+	}
+
+	/**
+	 * Adds the specified amount to the value stored for the key, claiming a
+	 * slot with a starting value of zero if the key is not yet present.
+	 * Values are stored as bytes; they hold neighbor counts, which never
+	 * exceed 8, so the sum always fits.
+	 * @param key Packed cell coordinates.
+	 * @param amount Amount to add.
+	 */
+	public void add(long key, int amount) {
+		int slot = this.claim(key);
+		this.values[slot] = (byte)(this.values[slot] + amount);
+	}
+
+	/**
+	 * Stores the value for the specified key, claiming a slot if the key is
+	 * not yet present.
+	 * @param key Packed cell coordinates.
+	 * @param value Value to store.
+	 */
+	public void put(long key, int value) {
+		int slot = this.claim(key);
+		this.values[slot] = (byte)value;
+	}
+
+	/**
+	 * Retrieves the value stored for the specified key.
+	 * @param key Packed cell coordinates.
+	 * @return Value stored for the key, zero if the key is not present.
+	 */
+	public int get(long key) {
+		int slot = this.find(key);
+		return (slot < 0) ? 0 : this.values[slot];
+	}
+
+	/**
+	 * Determines whether the key has a slot in the current epoch.
+	 * @param key Packed cell coordinates.
+	 * @return True if the key is present, false otherwise.
+	 */
+	public boolean containsKey(long key) {
+		return this.find(key) >= 0;
+	}
+
+	/**
+	 * Empties the table by moving to a new epoch.  Storage is kept for reuse.
+	 */
+	public void clear() {
+		this.size = 0;
+		this.epoch++;
+
+		// on wrap-around the old stamps could alias the new epoch
+		if (this.epoch == 0) {
+			Arrays.fill(this.stamps, 0);
+			this.epoch = 1;
+		}
+	}
+
+	/**
+	 * Determines how many keys are stored in the current epoch.
+	 * @return Number of stored keys.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Retrieves the key of the n-th entry claimed in this epoch.
+	 * @param index Value between 0 and size() - 1.
+	 * @return Packed cell coordinates.
+	 */
+	public long keyAt(int index) {
+		return this.keys[this.used[index]];
+	}
+
+	/**
+	 * Retrieves the value of the n-th entry claimed in this epoch.
+	 * @param index Value between 0 and size() - 1.
+	 * @return Value stored for that entry.
+	 */
+	public int valueAt(int index) {
+		return this.values[this.used[index]];
+	}
+
+	/**
+	 * Locates the slot for the key, claiming one if needed.
+	 * @param key Packed cell coordinates.
+	 * @return Slot holding the key.
+	 */
+	private int claim(long key) {
+		int slot = hash(key) & this.mask;
+		while (this.stamps[slot] == this.epoch) {
+			if (this.keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+
+		// grow before we pass the load factor, then find our new home
+		if (this.size + 1 > this.keys.length * MAX_LOAD) {
+			this.rehash(this.keys.length << 1);
+			return this.claim(key);
+		}
+
+		this.stamps[slot] = this.epoch;
+		this.keys[slot] = key;
+		this.values[slot] = 0;
+		this.used[this.size++] = slot;
+		return slot;
+	}
+
+	/**
+	 * Locates the slot for the key.
+	 * @param key Packed cell coordinates.
+	 * @return Slot holding the key, -1 if the key is not present.
+	 */
+	private int find(long key) {
+		int slot = hash(key) & this.mask;
+		while (this.stamps[slot] == this.epoch) {
+			if (this.keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Moves the current epoch's entries into larger storage, preserving their
+	 * insertion order.
+	 * @param capacity New number of slots, a power of two.
+	 */
+	private void rehash(int capacity) {
+		long[] oldKeys = this.keys;
+		byte[] oldValues = this.values;
+		int[] oldUsed = this.used;
+		int oldSize = this.size;
+
+		this.allocate(capacity);
+		this.epoch = 1;
+		this.size = 0;
+
+		for (int i = 0; i < oldSize; ++i) {
+			int oldSlot = oldUsed[i];
+			int slot = this.claim(oldKeys[oldSlot]);
+			this.values[slot] = oldValues[oldSlot];
+		}
+	}
+
+	/**
+	 * Allocates empty storage.
+	 * @param capacity Number of slots, a power of two.
+	 */
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		this.values = new byte[capacity];
+		this.stamps = new int[capacity];
+		this.used = new int[(int)(capacity * MAX_LOAD) + 1];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Spreads the bits of a packed key so that neighboring cells do not
+	 * cluster in the table.
+	 * @param key Packed cell coordinates.
+	 * @return Well-mixed hash value.
+	 */
+	static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		return (int)key;
+	}
+}
@@ -0,0 +1,227 @@
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * PackedSequentialGameOfLifeSimulator performs the same sparse simulation as
+ * SequentialGameOfLifeSimulator, but stores cells as packed long coordinates
+ * inside of primitive open-addressing tables.  Both tables are reused from
+ * one generation to the next, so no Cell objects are created while
+ * simulating.
+ * @author Alex Maskovyak
+ *
+ */
+public class PackedSequentialGameOfLifeSimulator implements GameOfLifeSimulator {
+
+	//
+	// Private member variables
+	//
+
+	// neighbor count values carry this flag when the cell itself is alive
+	protected static final int ALIVE = 0x10;
+	protected static final int COUNT_MASK = 0x0F;
+
+	// hold live cells, a value of 0 marks a cell removed since the last step
+	protected PackedCellTable livingCells;
+	protected int livingCellCount;
+
+	// hold neighbor counts for live cells and their neighbors
+	protected PackedCellTable neighborCounts;
+	protected NeighborVisitor counter;
+
+	// additional cell / game rules
+	protected CellLifeRules rules;
+	protected CellNeighborhood neighborhood;
+
+	// rules as neighbor count masks, bit n set for n neighbors
+	protected int survivalMask;
+	protected int birthMask;
+
+
+	/**
+	 * Default constructor.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity.
+	 */
+	public PackedSequentialGameOfLifeSimulator(
+			CellLifeRules rules,
+			CellNeighborhood neighborhood) {
+		this(new ArrayList<Cell>(), rules, neighborhood);
+	}
+
+	/**
+	 * Constructor.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity.
+	 */
+	public PackedSequentialGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood)
+	{
+		// set our internal values
+		this.livingCells = new PackedCellTable(liveCells.size());
+		this.neighborCounts = new PackedCellTable(liveCells.size() * 4);
+		this.counter = new NeighborVisitor() {
+			public void visit(int x, int y) {
+				neighborCounts.add(PackedCellTable.pack(x, y), 1);
+			}
+		};
+
+		this.rules = rules;
+		this.neighborhood = neighborhood;
+
+		// ask the rules about every count once, rather than once per cell
+		this.survivalMask = BitLifeKernel.survivalMask(rules);
+		this.birthMask = BitLifeKernel.birthMask(rules);
+
+		// add live cells to the living cell storage area
+		this.addLivingCells(liveCells);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#performSimulation()
+	 */
+	public void performSimulation() throws Exception {
+		// Neighbor counting
+		this.updateCellCounts();
+
+		// Killing and birthing cells area
+		this.updateLiveCellList();
+	}
+
+	/**
+	 * Creates an up-to-date neighbor count for all live cells as well as their
+	 * neighbors.
+	 */
+	protected void updateCellCounts() {
+		PackedCellTable counts = this.neighborCounts;
+		counts.clear();
+
+		for (int i = 0, size = this.livingCells.size(); i < size; ++i) {
+			// skip cells removed since the last step
+			if (this.livingCells.valueAt(i) == 0) {
+				continue;
+			}
+
+			long key = this.livingCells.keyAt(i);
+
+			// mark ourselves as alive
+			counts.add(key, ALIVE);
+
+			// count ourselves as a neighbor of each of our neighbors
+			this.neighborhood.visitNeighbors(
+					PackedCellTable.unpackX(key),
+					PackedCellTable.unpackY(key),
+					this.counter);
+		}
+	}
+
+	/**
+	 * Performs killing and birthing of cells.  Replaces the live cell table
+	 * with the next generation.
+	 */
+	protected void updateLiveCellList() {
+		PackedCellTable counts = this.neighborCounts;
+		this.livingCells.clear();
+		this.livingCellCount = 0;
+
+		for (int i = 0, size = counts.size(); i < size; ++i) {
+			int value = counts.valueAt(i);
+			int neighbors = value & COUNT_MASK;
+
+			int mask = ((value & ALIVE) != 0) ? this.survivalMask : this.birthMask;
+
+			if (((mask >>> neighbors) & 1) != 0) {
+				this.livingCells.put(counts.keyAt(i), 1);
+				this.livingCellCount++;
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#getCurrentState()
+	 */
+	public List<Cell> getCurrentState() {
+		List<Cell> cells = new ArrayList<Cell>(this.livingCellCount);
+		for (int i = 0, size = this.livingCells.size(); i < size; ++i) {
+			if (this.livingCells.valueAt(i) != 0) {
+				long key = this.livingCells.keyAt(i);
+				cells.add(new Cell(
+						PackedCellTable.unpackX(key),
+						PackedCellTable.unpackY(key)));
+			}
+		}
+		return cells;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#addLivingCell()
+	 */
+	public void addLivingCell(Cell livingCell) {
+		// ensure that this cell is a resident of the neighborhood
+		// if it isn't, don't bother with the needless computation
+		if (!this.neighborhood.isResident(livingCell)) {
+			return;
+		}
+
+		long key = PackedCellTable.pack(livingCell.x, livingCell.y);
+		if (this.livingCells.get(key) == 0) {
+			this.livingCells.put(key, 1);
+			this.livingCellCount++;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see GameOfLifeSimulator#addLivingCells()
+	 */
+	public void addLivingCells(List<Cell> livingCells) {
+		for (Cell c : livingCells) {
+			this.addLivingCell(c);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#clearLivingCells()
+	 */
+	public void clearLivingCells() {
+		this.livingCells.clear();
+		this.neighborCounts.clear();
+		this.livingCellCount = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#removeLivingCell(Cell)
+	 */
+	public void removeLivingCell(Cell livingCell) {
+		long key = PackedCellTable.pack(livingCell.x, livingCell.y);
+		if (this.livingCells.get(key) != 0) {
+			this.livingCells.put(key, 0);
+			this.livingCellCount--;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#removeLivingCells(java.util.List)
+	 */
+	public void removeLivingCells(List<Cell> livingCells) {
+		for (Cell c : livingCells) {
+			this.removeLivingCell(c);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#getLivingCellCount()
+	 */
+	public int getLivingCellCount() {
+		return this.livingCellCount;
+	}
+}
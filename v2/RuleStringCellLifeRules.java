@@ -0,0 +1,161 @@
+/**
+ * Implements any "life-like" rule given in rulestring notation, such as
+ * "B3/S23" for Conway's Game of Life, "B36/S23" for HighLife or
+ * "B3678/S34678" for Day &amp; Night.  The older "S/B" notation without
+ * letters, e.g. "23/3", is also accepted.  Birth and survival counts are
+ * stored as 9-bit masks, bit n being set if n live neighbors cause a birth or
+ * allow survival, so every rule query is a single shift and test.
+ *
+ * Rules with births on 0 neighbors, such as "B03/S23", are rejected: nearly
+ * every simulator only considers cells near live ones, or skips quiet
+ * regions, so they would disagree on how empty space comes to life.
+ * @author Alex Maskovyak
+ *
+ */
+public class RuleStringCellLifeRules implements CellLifeRules {
+
+	private final int birthMask;
+	private final int survivalMask;
+
+	/**
+	 * Constructor.
+	 * @param ruleString Rule in "Bxx/Syy" or "yy/xx" notation.
+	 * @throws IllegalArgumentException If the rule string can't be parsed, or
+	 * 			has births on 0 neighbors.
+	 */
+	public RuleStringCellLifeRules(String ruleString) {
+		// keep an empty birth part, as in "23/"
+		String[] parts = ruleString.trim().split("/", -1);
+		if (parts.length != 2) {
+			throw new IllegalArgumentException(
+					"Rule string must have two parts separated by '/': " + ruleString);
+		}
+
+		String birth = null;
+		String survival = null;
+
+		for (String part : parts) {
+			part = part.trim();
+			if (part.length() > 0 && Character.toUpperCase(part.charAt(0)) == 'B') {
+				birth = part.substring(1);
+			}
+			else if (part.length() > 0 && Character.toUpperCase(part.charAt(0)) == 'S') {
+				survival = part.substring(1);
+			}
+		}
+
+		// no letters: survival first, then birth
+		if (birth == null && survival == null) {
+			survival = parts[0].trim();
+			birth = parts[1].trim();
+		}
+		if (birth == null || survival == null) {
+			throw new IllegalArgumentException(
+					"Rule string needs both a B and an S part: " + ruleString);
+		}
+
+		this.birthMask = requireNoBirthOnZero(parseCounts(birth, ruleString), ruleString);
+		this.survivalMask = parseCounts(survival, ruleString);
+	}
+
+	/**
+	 * Constructor.
+	 * @param birthMask Bit n set if a dead cell with n neighbors is born.
+	 * @param survivalMask Bit n set if a live cell with n neighbors survives.
+	 * @throws IllegalArgumentException If bit 0 of the birth mask is set.
+	 */
+	public RuleStringCellLifeRules(int birthMask, int survivalMask) {
+		this.birthMask = requireNoBirthOnZero(birthMask & 0x1FF, Integer.toBinaryString(birthMask));
+		this.survivalMask = survivalMask & 0x1FF;
+	}
+
+	/**
+	 * Rejects a birth mask which brings cells with no live neighbors to life.
+	 * @param birthMask Birth mask to check.
+	 * @param rule Rule the mask came from, for error reporting.
+	 * @return The birth mask.
+	 */
+	private static int requireNoBirthOnZero(int birthMask, String rule) {
+		if ((birthMask & 1) != 0) {
+			throw new IllegalArgumentException(
+					"Rules with births on 0 neighbors (B0) are not supported, as the " +
+					"simulators leave empty space empty: " + rule);
+		}
+		return birthMask;
+	}
+
+	/**
+	 * Converts a run of digits into a neighbor count mask.
+	 * @param counts Digits between 0 and 8.
+	 * @param ruleString Complete rule, for error reporting.
+	 * @return Mask with a bit set for each digit.
+	 */
+	private static int parseCounts(String counts, String ruleString) {
+		int mask = 0;
+		for (int i = 0; i < counts.length(); ++i) {
+			int count = counts.charAt(i) - '0';
+			if (count < 0 || count > 8) {
+				throw new IllegalArgumentException(
+						"Neighbor counts must be digits from 0 to 8: " + ruleString);
+			}
+			mask |= (1 << count);
+		}
+		return mask;
+	}
+
+	/**
+	 * Retrieves the birth counts.
+	 * @return Mask with bit n set if a dead cell with n neighbors is born.
+	 */
+	public int getBirthMask() {
+		return this.birthMask;
+	}
+
+	/**
+	 * Retrieves the survival counts.
+	 * @return Mask with bit n set if a live cell with n neighbors survives.
+	 */
+	public int getSurvivalMask() {
+		return this.survivalMask;
+	}
+
+	/* (non-Javadoc)
+	 * @see CellLifeRules#isBorn()
+	 */
+	public boolean isBorn(int liveNeighbors) {
+		return (liveNeighbors & ~0xF) == 0 && ((this.birthMask >>> liveNeighbors) & 1) != 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see CellLifeRules#lives()
+	 */
+	public boolean lives(int liveNeighbors) {
+		return (liveNeighbors & ~0xF) == 0 && ((this.survivalMask >>> liveNeighbors) & 1) != 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see CellLifeRules#dies()
+	 */
+	public boolean dies(int liveNeighbors) {
+		return !lives(liveNeighbors);
+	}
+
+	/**
+	 * Writes the rule in "Bxx/Syy" notation.
+	 */
+	public String toString() {
+		StringBuilder builder = new StringBuilder("B");
+		for (int n = 0; n <= 8; ++n) {
+			if ((this.birthMask & (1 << n)) != 0) {
+				builder.append(n);
+			}
+		}
+		builder.append("/S");
+		for (int n = 0; n <= 8; ++n) {
+			if ((this.survivalMask & (1 << n)) != 0) {
+				builder.append(n);
+			}
+		}
+		return builder.toString();
+	}
+}
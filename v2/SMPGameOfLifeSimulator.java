@@ -1,44 +1,197 @@
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
 
+import edu.rit.pj.BarrierAction;
 import edu.rit.pj.ParallelTeam;
 import edu.rit.pj.ParallelRegion;
-import edu.rit.pj.ParallelSection;
 import edu.rit.pj.IntegerForLoop;
-import java.util.concurrent.ConcurrentHashMap;
+import edu.rit.pj.IntegerSchedule;
 
 /**
  * MasterCommGameOfLifeSimulator is responsible for storing game logic, storing
  * game-state, and performing the simulation.
+ * 
+ * A single Parallel Team is kept for the whole run.  Each generation is one
+ * Parallel Region of two phases separated by barriers: neighbor counting,
+ * then selection of survivors and births.  Living cells and neighbor counts
+ * are kept as packed coordinates in ConcurrentPackedCellTables, which every
+ * thread updates at once with atomic operations, so the results are exact
+ * and the same for any number of threads.  Each thread empties the table
+ * entries it has just read, so both tables are cleared in parallel and
+ * reused from one generation to the next.
+ * 
+ * Both phases share their loops out under a configurable schedule: any
+ * schedule IntegerSchedule.parse understands, such as "fixed",
+ * "dynamic(1000)" or "guided(64)", or "adaptive".  The adaptive schedule
+ * is dynamic, timing each thread's share of each phase and, between
+ * generations, halving a phase's chunk size if the slowest thread took
+ * too long compared with the average, or doubling it otherwise.  The
+ * schedule is given to the constructor or, by default, taken from the
+ * gol.schedule system property.
  * @author Sean Janis 
  * @author Alex Maskovyak
  * @author Steve Baylor
  *
  */
-public class SMPGameOfLifeSimulator extends SequentialGameOfLifeSimulator {
+public class SMPGameOfLifeSimulator implements GameOfLifeSimulator {
+   
+   //
+   // Private member variables
+   //
+   
+   // neighbor count values carry this flag when the cell itself is alive
+   protected static final int ALIVE = 0x10;
+   protected static final int COUNT_MASK = 0x0F;
+   
+   // each live cell counts toward itself and at most 8 neighbors
+   protected static final int CELLS_TOUCHED = 9;
+   
+   // schedule used when none is given
+   public static final String SCHEDULE_PROPERTY = "gol.schedule";
+   public static final String DEFAULT_SCHEDULE = "fixed";
+   public static final String ADAPTIVE_SCHEDULE = "adaptive";
+   
+   // adaptive chunk size bounds, and how far the slowest thread may trail
+   // the average before chunks are made smaller
+   protected static final int MIN_ADAPTIVE_CHUNK = 64;
+   protected static final int MAX_ADAPTIVE_CHUNK = 1 << 16;
+   protected static final double ADAPTIVE_TOLERANCE = 1.1;
+   
+   // phase indices for schedules and timings
+   protected static final int COUNT_PHASE = 0;
+   protected static final int SELECT_PHASE = 1;
+   
+   protected ParallelTeam team;
+   protected GenerationRegion region;
+   
+   // hold live cells, a value of 0 marks a cell removed since the last step
+   protected ConcurrentPackedCellTable livingCells;
+   protected int livingCellCount;
+   
+   // hold neighbor counts for live cells and their neighbors
+   protected ConcurrentPackedCellTable neighborCounts;
+   protected NeighborVisitor counter;
+   
+   // live cells selected by each thread, indexed by team thread index
+   protected int[] threadCellCounts;
+   
+   // loop schedule of each phase; when adaptive, the chunk size of each
+   // phase and the time each thread spent in it, indexed by phase then
+   // team thread index
+   protected IntegerSchedule[] schedules;
+   protected boolean adaptive;
+   protected int[] chunkSizes;
+   protected long[][] threadTimes;
+   
+   // additional cell / game rules
+   protected CellLifeRules rules;
+   protected CellNeighborhood neighborhood;
+   
+   // rules as neighbor count masks, bit n set for n neighbors
+   protected int survivalMask;
+   protected int birthMask;
+   
    
    /**
     * Constructor.
-    * @param liveCells List of live cells to manage.
     * @param rules Rules to determine a cell's next state.
     * @param neighborhood Determines cell connectivity.
+    * @param cellsFile File containing cells for simulation.
     */
    public SMPGameOfLifeSimulator(
          CellLifeRules rules, 
          CellNeighborhood neighborhood,
          File cellsFile)   
    {
-      // call superconstructor
-      super(new ArrayList<Cell>(), rules, neighborhood);
-      List<Cell> livingCells = GameOfLifeFileIO.getLiveCells(cellsFile);
+      this(GameOfLifeFileIO.getLiveCells(cellsFile), 
+            rules, 
+            neighborhood, 
+            ParallelTeam.getDefaultThreadCount());
+   }
+   
+   /**
+    * Constructor.
+    * @param liveCells List of live cells to manage.
+    * @param rules Rules to determine a cell's next state.
+    * @param neighborhood Determines cell connectivity.
+    * @param threads Number of threads in the Parallel Team.
+    */
+   public SMPGameOfLifeSimulator(
+         List<Cell> liveCells,
+         CellLifeRules rules, 
+         CellNeighborhood neighborhood,
+         int threads)   
+   {
+      this(liveCells, 
+            rules, 
+            neighborhood, 
+            threads,
+            System.getProperty(SCHEDULE_PROPERTY, DEFAULT_SCHEDULE));
+   }
+   
+   /**
+    * Constructor.
+    * @param liveCells List of live cells to manage.
+    * @param rules Rules to determine a cell's next state.
+    * @param neighborhood Determines cell connectivity.
+    * @param threads Number of threads in the Parallel Team.
+    * @param schedule Loop schedule of both phases, as understood by
+    * IntegerSchedule.parse, or "adaptive".
+    */
+   public SMPGameOfLifeSimulator(
+         List<Cell> liveCells,
+         CellLifeRules rules, 
+         CellNeighborhood neighborhood,
+         int threads,
+         String schedule)   
+   {
+      this.team = new ParallelTeam(threads);
+      this.region = new GenerationRegion();
+      this.threadCellCounts = new int[threads];
       
-      for (Cell c : livingCells)
+      // adaptive chunks start out giving each thread a handful of chunks
+      this.adaptive = ADAPTIVE_SCHEDULE.equals(schedule);
+      this.schedules = new IntegerSchedule[2];
+      this.chunkSizes = new int[2];
+      this.threadTimes = new long[2][threads];
+      for (int phase = COUNT_PHASE; phase <= SELECT_PHASE; phase++)
       {
-         this.addLivingCell(c);
+         if (this.adaptive)
+         {
+            int cells = Math.max(liveCells.size(), 1) * 
+               ((phase == COUNT_PHASE) ? 1 : CELLS_TOUCHED);
+            this.chunkSizes[phase] = Math.max(MIN_ADAPTIVE_CHUNK, 
+                  Math.min(MAX_ADAPTIVE_CHUNK, cells / (threads * 8)));
+            this.schedules[phase] = 
+               IntegerSchedule.dynamic(this.chunkSizes[phase]);
+         }
+         else
+         {
+            this.schedules[phase] = IntegerSchedule.parse(schedule);
+         }
       }
+      
+      this.livingCells = new ConcurrentPackedCellTable(liveCells.size());
+      this.neighborCounts = 
+         new ConcurrentPackedCellTable(liveCells.size() * CELLS_TOUCHED);
+      this.counter = new NeighborVisitor()
+      {
+         public void visit(int x, int y)
+         {
+            neighborCounts.add(PackedCellTable.pack(x, y), 1);
+         }
+      };
+      
+      this.rules = rules;
+      this.neighborhood = neighborhood;
+      
+      // ask the rules about every count once, rather than once per cell
+      this.survivalMask = BitLifeKernel.survivalMask(rules);
+      this.birthMask = BitLifeKernel.birthMask(rules);
+      
+      // add live cells to the living cell storage area
+      this.addLivingCells(liveCells);
    }
 
    
@@ -48,76 +201,269 @@ public class SMPGameOfLifeSimulator extends SequentialGameOfLifeSimulator {
    public void performSimulation() throws Exception {
       
       //
-      // Perform necessary cleanup before Simulation
-      //
-
-      this.cleanCellCounts();
- 
-      //
-      // Convert Living Cell Hash Map to Chunkable List
+      // The tables can't grow while threads add to them, so make room for
+      // every cell the living cells could touch
       //
       
-      Set<Cell> livingCellsSet = livingCells.keySet();
-      final List<Cell> livingCellsList = new ArrayList<Cell>();
-  
-      for (Cell currentCell : livingCellsSet) 
-      {
-         livingCellsList.add(currentCell);
-      }
+      this.neighborCounts.ensureCapacity(
+            this.livingCells.size() * CELLS_TOUCHED);
       
-      new ParallelTeam().execute(new ParallelRegion()
+      this.team.execute(this.region);
+   }
+   
+   /**
+    * One generation, executed by every thread of the team.
+    */
+   protected class GenerationRegion extends ParallelRegion
+   {
+      public void run() throws Exception
       {
-         public void run() throws Exception
+         final int myTeamID = getThreadIndex();
+         
+         //
+         // Phase 1: each thread counts its chunk of the Living Cells
+         // toward themselves and their neighbors, then empties the chunk
+         //
+         
+         execute(0, livingCells.size() - 1, new PhaseLoop(COUNT_PHASE)
          {
-            final int myTeamID = getThreadIndex() + 1;
-            
-            //
-            // Each Parallel Team Thread has an Alive Cell chunk to process.
-            //
-            
-            execute(0, livingCellsList.size(), new IntegerForLoop()
+            public void run(int first, int last) throws Exception
             {
-               HashMap<Cell, Cell> localLivingCells = new HashMap<Cell, Cell>();
-               
-               public void run(int first, int last) throws Exception
+               for (int i = first; i <= last; i++)
                {
-                  //System.out.println("Thread " + myTeamID + ": Living Cells Range " + first + "-" + last);
-
-                  for (int i = first; i <= last; i++)
+                  // skip cells removed since the last step
+                  if (livingCells.valueAt(i) == 0)
                   {
-                     if (i == livingCellsList.size())
-                     {
-                        continue;
-                     }
-                     
-                     Cell temp = livingCellsList.get(i);
-                     if (temp == null)
-                     {
-                        continue;   
-                     }
-                     
-                     localLivingCells.put(temp, temp);
-                     //System.out.println("Thread " + myTeamID + ": " + temp.toString());
+                     continue;
                   }
                   
-                  //
-                  // Uses this Parallel Thread's Living Cell chunk to update
-                  // the shared Living Cells HashMap
-                  //
+                  long key = livingCells.keyAt(i);
+                  neighborCounts.add(key, ALIVE);
+                  neighborhood.visitNeighbors(
+                        PackedCellTable.unpackX(key), 
+                        PackedCellTable.unpackY(key), 
+                        counter);
+               }
+               
+               livingCells.emptyEntries(first, last);
+            }
+         });
+         
+         barrier(new BarrierAction()
+         {
+            public void run() throws Exception
+            {
+               livingCells.resetSize();
+               livingCells.ensureCapacity(neighborCounts.size());
+            }
+         });
+         
+         //
+         // Phase 2: all counts are final, so each thread decides the fate of
+         // its chunk of the counted cells, then empties the chunk
+         //
+         
+         threadCellCounts[myTeamID] = 0;
+         
+         execute(0, neighborCounts.size() - 1, new PhaseLoop(SELECT_PHASE)
+         {
+            public void run(int first, int last) throws Exception
+            {
+               int selected = 0;
+               
+               for (int i = first; i <= last; i++)
+               {
+                  int value = neighborCounts.valueAt(i);
+                  int neighbors = value & COUNT_MASK;
+                  
+                  int mask = ((value & ALIVE) != 0) ? survivalMask : birthMask;
                   
-                  updateCellCounts(localLivingCells);
+                  if (((mask >>> neighbors) & 1) != 0)
+                  {
+                     livingCells.put(neighborCounts.keyAt(i), 1);
+                     selected++;
+                  }
                }
-            });
-         }
-      });
+               
+               neighborCounts.emptyEntries(first, last);
+               threadCellCounts[myTeamID] += selected;
+            }
+         });
+         
+         barrier(new BarrierAction()
+         {
+            public void run() throws Exception
+            {
+               neighborCounts.resetSize();
+               
+               if (adaptive)
+               {
+                  adaptSchedules();
+               }
+               
+               livingCellCount = 0;
+               for (int selected : threadCellCounts)
+               {
+                  livingCellCount += selected;
+               }
+            }
+         });
+      }
+   }
+   
+   /**
+    * Loop over one phase's entries, run under that phase's schedule and
+    * timed per thread when the schedule is adaptive.
+    */
+   protected abstract class PhaseLoop extends IntegerForLoop
+   {
+      protected final int phase;
+      protected long startTime;
       
-      //
-      // After all data chunks have been analyzed and stored back in the
-      // shared Living Cell HashMap, update the Living Cells for the next iteration.
-      //
+      /**
+       * Constructor.
+       * @param phase COUNT_PHASE or SELECT_PHASE.
+       */
+      protected PhaseLoop(int phase)
+      {
+         this.phase = phase;
+      }
+      
+      public IntegerSchedule schedule()
+      {
+         return schedules[this.phase];
+      }
+      
+      public void start()
+      {
+         this.startTime = System.nanoTime();
+      }
+      
+      public void finish()
+      {
+         threadTimes[this.phase][getThreadIndex()] = 
+            System.nanoTime() - this.startTime;
+      }
+   }
+   
+   /**
+    * Resizes each phase's chunks from the thread timings of the generation
+    * just run: smaller if the slowest thread trailed the average by more
+    * than the tolerance, larger otherwise, to cut scheduling overhead.
+    */
+   protected void adaptSchedules() 
+   {
+      for (int phase = COUNT_PHASE; phase <= SELECT_PHASE; phase++)
+      {
+         long slowest = 0;
+         long total = 0;
+         for (long time : this.threadTimes[phase])
+         {
+            slowest = Math.max(slowest, time);
+            total += time;
+         }
+         
+         double average = (double)total / this.threadTimes[phase].length;
+         int chunk = this.chunkSizes[phase];
+         if (slowest > average * ADAPTIVE_TOLERANCE)
+         {
+            chunk = Math.max(MIN_ADAPTIVE_CHUNK, chunk / 2);
+         }
+         else
+         {
+            chunk = Math.min(MAX_ADAPTIVE_CHUNK, chunk * 2);
+         }
+         
+         if (chunk != this.chunkSizes[phase])
+         {
+            this.chunkSizes[phase] = chunk;
+            this.schedules[phase] = IntegerSchedule.dynamic(chunk);
+         }
+      }
+   }
+   
+   /* 
+    * (non-Javadoc)
+    * @see GameOfLifeSimulator#getCurrentState()
+    */
+   public List<Cell> getCurrentState() {
+      List<Cell> cells = new ArrayList<Cell>(this.livingCellCount);
+      for (int i = 0, size = this.livingCells.size(); i < size; ++i) {
+         if (this.livingCells.valueAt(i) != 0) {
+            long key = this.livingCells.keyAt(i);
+            cells.add(new Cell(
+                  PackedCellTable.unpackX(key), 
+                  PackedCellTable.unpackY(key)));
+         }
+      }
+      return cells;
+   }
+   
+   /* 
+    * (non-Javadoc)
+    * @see GameOfLifeSimulator#addLivingCell()
+    */ 
+   public void addLivingCell(Cell livingCell) {
+      // ensure that this cell is a resident of the neighborhood
+      // if it isn't, don't bother with the needless computation
+      if (!this.neighborhood.isResident(livingCell)) {
+         return;
+      }
       
-      this.updateLiveCellList();
+      long key = PackedCellTable.pack(livingCell.x, livingCell.y);
+      if (this.livingCells.get(key) == 0) {
+         this.livingCells.ensureCapacity(this.livingCells.size() + 1);
+         this.livingCells.put(key, 1);
+         this.livingCellCount++;
+      }
+   }
+   
+   /* (non-Javadoc)
+    * @see GameOfLifeSimulator#addLivingCells()
+    */ 
+   public void addLivingCells(List<Cell> livingCells) {
+      for (Cell c : livingCells) {
+         this.addLivingCell(c);
+      }
+   }
+   
+   /*
+    * (non-Javadoc)
+    * @see GameOfLifeSimulator#clearLivingCells()
+    */
+   public void clearLivingCells() {
+      this.livingCells.clear();
+      this.neighborCounts.clear();
+      this.livingCellCount = 0;
+   }
+   
+   /*
+    * (non-Javadoc)
+    * @see GameOfLifeSimulator#removeLivingCell(Cell)
+    */
+   public void removeLivingCell(Cell livingCell) {
+      long key = PackedCellTable.pack(livingCell.x, livingCell.y);
+      if (this.livingCells.get(key) != 0) {
+         this.livingCells.put(key, 0);
+         this.livingCellCount--;
+      }
+   }
+   
+   /*
+    * (non-Javadoc)
+    * @see GameOfLifeSimulator#removeLivingCells(java.util.List)
+    */
+   public void removeLivingCells(List<Cell> livingCells) {
+      for (Cell c : livingCells) {
+         this.removeLivingCell(c);
+      }
+   }
+   
+   /*
+    * (non-Javadoc)
+    * @see GameOfLifeSimulator#getLivingCellCount()
+    */
+   public int getLivingCellCount() {
+      return this.livingCellCount;
    }
 }
-
-
@@ -128,37 +128,98 @@ public class SequentialGameOfLifeSimulator implements GameOfLifeSimulator {
 		   livingCellSet = localLivingCells.keySet();
 		}
 		
-		List<Cell> neighbors;
+		NeighborCounter counter = new NeighborCounter();
 
 		// add neighbors to the gestating area where needed
 		for (Cell livingCell : livingCellSet) {
-			neighbors = this.neighborhood.getNeighborIdentities(livingCell);
+			this.neighborhood.visitNeighbors(livingCell.x, livingCell.y, counter);
+		}		
+	}
+	
+	/**
+	 * Counts one neighbor at a time, creating gestating cells as needed.
+	 * Lookups go through a CellProbe that is moved to each neighbor, so only
+	 * newly gestating cells are allocated.  Each thread counting at the same
+	 * time needs its own NeighborCounter.
+	 */
+	protected class NeighborCounter implements NeighborVisitor {
+		
+		// moved to each neighbor for lookups, never stored
+		protected final CellProbe probe = new CellProbe();
+		
+		/* (non-Javadoc)
+		 * @see NeighborVisitor#visit(int, int)
+		 */
+		public void visit(int x, int y) {
+			this.probe.moveTo(x, y);
 			
-			// go through the newbies
-			for (Cell neighbor : neighbors) {
-				// check to see if it is alive
-				Cell liveCell = this.livingCells.get(neighbor);
-				
-				// if it is already alive, increase its count
-				if (liveCell != null) {
-					liveCell.neighborCount++;
-					continue;
-				}
-				
-				// determine whether it is gestating
-				Cell gestatingCell = this.gestatingCells.get(neighbor);
-				// if it is already there, update its count
-				if (gestatingCell != null) {
-					gestatingCell.neighborCount++;
-					continue;
-				}
-				
-				// we have to create our new potential life that ought to be
-				// gestating!
-				neighbor.neighborCount = 1;
-				this.gestatingCells.put(neighbor, neighbor);
+			// check to see if it is alive
+			Cell liveCell = livingCells.get(this.probe);
+			
+			// if it is already alive, increase its count
+			if (liveCell != null) {
+				liveCell.neighborCount++;
+				return;
 			}
-		}		
+			
+			// determine whether it is gestating
+			Cell gestatingCell = gestatingCells.get(this.probe);
+			// if it is already there, update its count
+			if (gestatingCell != null) {
+				gestatingCell.neighborCount++;
+				return;
+			}
+			
+			// we have to create our new potential life that ought to be
+			// gestating!
+			Cell neighbor = new Cell(x, y);
+			neighbor.neighborCount = 1;
+			gestatingCell = gestatingCells.putIfAbsent(neighbor, neighbor);
+			// another thread created it first
+			if (gestatingCell != null) {
+				gestatingCell.neighborCount++;
+			}
+		}
+	}
+	
+	/**
+	 * Stands in for a cell when looking one up in the cell maps.  It hashes
+	 * as the cell at its coordinates does and equals it, which is all a
+	 * ConcurrentHashMap lookup asks of the key it is given, since the map
+	 * calls the given key's equals.  A probe is never a Cell, so it can never
+	 * be stored as a key; only get may be passed one.
+	 */
+	protected static class CellProbe {
+		
+		protected int x;
+		protected int y;
+		
+		/**
+		 * Moves the probe to the specified coordinates.
+		 * @param x X coordinate value.
+		 * @param y Y coordinate value.
+		 */
+		public void moveTo(int x, int y) {
+			this.x = x;
+			this.y = y;
+		}
+		
+		/**
+		 * Equals the cell at the probe's coordinates.
+		 */
+		public boolean equals(Object o) {
+			if (!(o instanceof Cell)) {
+				return false;
+			}
+			return (this.x == ((Cell)o).x && this.y == ((Cell)o).y);
+		}
+		
+		/**
+		 * Hashes as the cell at the probe's coordinates.
+		 */
+		public int hashCode() {
+			return Cell.hashCode(this.x, this.y);
+		}
 	}
 
 	/**
@@ -0,0 +1,297 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * TemporalBitGridGameOfLifeSimulator advances a BitGridGameOfLifeSimulator
+ * board several generations per pass over memory.  The board is cut into
+ * cache-sized tiles; each tile is copied into a private scratch area along
+ * with a halo k rows deep above and below and one word to either side, run k
+ * generations there, and its core written to the next board.  The halo loses
+ * a cell of validity per generation, so edge cells are computed redundantly
+ * by neighboring tiles, but each pass reads and writes the board once rather
+ * than k times.  Tiles are independent within a pass and run on a
+ * ForkJoinPool.
+ *
+ * Cells outside of the world are cleared after every local generation, so
+ * the world must not wrap.
+ * @author Alex Maskovyak
+ *
+ */
+public class TemporalBitGridGameOfLifeSimulator extends BitGridGameOfLifeSimulator
+	implements MultiStepGameOfLifeSimulator {
+
+	//
+	// Private member variables
+	//
+	public static final int DEFAULT_GENERATIONS_PER_PASS = 4;
+	public static final int DEFAULT_TILE_SIZE = 1024;
+
+	// the side halo is a single word, which stays valid for this long
+	public static final int MAX_GENERATIONS_PER_PASS = 64;
+
+	protected ForkJoinPool pool;
+	protected int generationsPerPass;
+
+	// tile dimensions, and the number of tiles down and across the board
+	protected int tileRows;
+	protected int tileWords;
+	protected int tilesDown;
+	protected int tilesAcross;
+
+	// scratch layout: local rows and words of a tile, halos included, with a
+	// padding word on either side of each row
+	protected int localStride;
+	protected ThreadLocal<long[][]> scratch;
+
+
+	/**
+	 * Constructor, runs on the common pool with the default tile size.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded and
+	 * must not wrap.
+	 * @param generationsPerPass Generations run on each tile per pass.
+	 */
+	public TemporalBitGridGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood,
+			int generationsPerPass)
+	{
+		this(liveCells, rules, neighborhood, generationsPerPass,
+				ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded and
+	 * must not wrap.
+	 * @param generationsPerPass Generations run on each tile per pass, from 1
+	 * to MAX_GENERATIONS_PER_PASS.
+	 * @param pool Pool to run the tile tasks on.
+	 * @param tileSize Width and height of a tile, in cells; the width is
+	 * rounded down to whole words.
+	 */
+	public TemporalBitGridGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood,
+			int generationsPerPass,
+			ForkJoinPool pool,
+			int tileSize)
+	{
+		super(liveCells, rules, neighborhood);
+
+		if (this.wrapping) {
+			throw new IllegalArgumentException(
+					"TemporalBitGridGameOfLifeSimulator does not support wrapping neighborhoods.");
+		}
+		if (generationsPerPass < 1 || generationsPerPass > MAX_GENERATIONS_PER_PASS) {
+			throw new IllegalArgumentException(
+					"Generations per pass must be from 1 to " + MAX_GENERATIONS_PER_PASS +
+					": " + generationsPerPass);
+		}
+		if (tileSize < 64) {
+			throw new IllegalArgumentException("Tile size must be at least 64: " + tileSize);
+		}
+
+		this.pool = pool;
+		this.generationsPerPass = generationsPerPass;
+
+		this.tileRows = tileSize;
+		this.tileWords = tileSize / 64;
+		this.tilesDown = (this.height + this.tileRows - 1) / this.tileRows;
+		this.tilesAcross = (this.words + this.tileWords - 1) / this.tileWords;
+
+		// two scratch boards per thread, sized for the deepest halo
+		this.localStride = this.tileWords + 4;
+		final int scratchLength =
+			(this.tileRows + 2 * MAX_GENERATIONS_PER_PASS + 2) * this.localStride;
+		this.scratch = new ThreadLocal<long[][]>() {
+			protected long[][] initialValue() {
+				return new long[2][scratchLength];
+			}
+		};
+	}
+
+	/**
+	 * Determines how many generations each pass runs.
+	 * @return Generations per pass.
+	 */
+	public int getGenerationsPerPass() {
+		return this.generationsPerPass;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#performSimulation()
+	 */
+	public void performSimulation() throws Exception {
+		this.performSimulations(1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see MultiStepGameOfLifeSimulator#performSimulations(int)
+	 */
+	public void performSimulations(int generations) throws Exception {
+		while (generations > 0) {
+			int passGenerations = Math.min(generations, this.generationsPerPass);
+			this.pool.invoke(new TilePass(0, this.tilesDown * this.tilesAcross, passGenerations));
+			this.swapBoards();
+			generations -= passGenerations;
+		}
+	}
+
+	/**
+	 * Runs a range of tiles through one pass, splitting the range in half
+	 * until a single tile is left.
+	 */
+	protected class TilePass extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		// tiles covered, in row major order, first inclusive and last exclusive
+		protected final int firstTile, lastTile;
+		protected final int generations;
+
+		/**
+		 * Constructor.
+		 * @param firstTile First tile covered.
+		 * @param lastTile One past the last tile covered.
+		 * @param generations Generations to run each tile.
+		 */
+		protected TilePass(int firstTile, int lastTile, int generations) {
+			this.firstTile = firstTile;
+			this.lastTile = lastTile;
+			this.generations = generations;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute() {
+			if (this.lastTile - this.firstTile == 1) {
+				stepTile(this.firstTile, this.generations);
+				return;
+			}
+
+			int middle = (this.firstTile + this.lastTile) >>> 1;
+			invokeAll(
+					new TilePass(this.firstTile, middle, this.generations),
+					new TilePass(middle, this.lastTile, this.generations));
+		}
+	}
+
+	/**
+	 * Runs one tile the specified number of generations ahead, from the
+	 * current board into the next board.
+	 * @param tile Tile index, in row major order.
+	 * @param generations Generations to run, no more than the halo depth.
+	 */
+	protected void stepTile(int tile, int generations) {
+		long[][] boards = this.scratch.get();
+		long[] src = boards[0];
+		long[] dst = boards[1];
+
+		int firstRow = (tile / this.tilesAcross) * this.tileRows;
+		int coreRows = Math.min(this.tileRows, this.height - firstRow);
+		int firstWord = (tile % this.tilesAcross) * this.tileWords;
+		int coreWords = Math.min(this.tileWords, this.words - firstWord);
+
+		// local row r holds world row firstRow - generations + r, and local
+		// word i holds world word firstWord - 1 + i
+		int rows = coreRows + 2 * generations;
+		int localWords = coreWords + 2;
+
+		// the side halo words are empty past the edges of the world, and the
+		// world's last word only has room for part of a word of cells
+		long leftMask = (firstWord == 0) ? 0L : -1L;
+		long rightMask = (firstWord + coreWords == this.words) ? 0L : -1L;
+		int lastWord = this.words - firstWord;
+		long lastMask = this.lastWordMask;
+		if (lastWord >= localWords) {
+			lastWord = localWords - 1;
+			lastMask = rightMask;
+		}
+
+		// load the tile and its halo; the board's own padding words supply
+		// the empty side halos
+		for (int r = 0; r < rows; ++r) {
+			int row = firstRow - generations + r;
+			int local = this.localOffset(r);
+
+			// a narrower tile than the last one leaves old words where this
+			// row's right padding word sits
+			src[local + localWords] = 0L;
+			dst[local + localWords] = 0L;
+
+			if (row < 0 || row >= this.height) {
+				Arrays.fill(src, local, local + localWords, 0L);
+			}
+			else {
+				System.arraycopy(
+						this.current, this.rowOffset(row) + firstWord - 1,
+						src, local,
+						localWords);
+			}
+		}
+
+		// each generation is valid one row further in from either end
+		for (int generation = 1; generation <= generations; ++generation) {
+			for (int r = generation; r < rows - generation; ++r) {
+				int row = firstRow - generations + r;
+				int local = this.localOffset(r);
+
+				// rows outside of the world stay empty
+				if (row < 0 || row >= this.height) {
+					Arrays.fill(dst, local, local + localWords, 0L);
+					continue;
+				}
+
+				BitLifeKernel.stepRow(
+						src,
+						local - this.localStride,
+						local,
+						local + this.localStride,
+						localWords,
+						dst,
+						local,
+						this.survivalMask,
+						this.birthMask);
+
+				// cells outside of the world never come to life
+				dst[local] &= leftMask;
+				dst[local + localWords - 1] &= rightMask;
+				dst[local + lastWord] &= lastMask;
+			}
+
+			long[] temp = src;
+			src = dst;
+			dst = temp;
+		}
+
+		// the core is all that is valid after the last generation
+		for (int r = 0; r < coreRows; ++r) {
+			System.arraycopy(
+					src, this.localOffset(generations + r) + 1,
+					this.next, this.rowOffset(firstRow + r) + firstWord,
+					coreWords);
+		}
+	}
+
+	/**
+	 * Determines the index of the first word of a local row in scratch.
+	 * @param row Local row, from 0 up to the tile's rows plus both halos.
+	 * @return Index into a scratch board.
+	 */
+	protected int localOffset(int row) {
+		return (row + 1) * this.localStride + 1;
+	}
+}
@@ -0,0 +1,560 @@
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * TiledGameOfLifeSimulator stores the game world as a sparse collection of
+ * 64x64 bitboard tiles, hashed by tile coordinate.  Tiles are only created
+ * where there is life, or where life touches a tile edge and may spill over,
+ * and are released again once they empty out.  Inside of a tile every
+ * generation is computed 64 cells at a time by BitLifeKernel, using the
+ * edge rows and columns of the eight neighboring tiles as a halo.
+ *
+ * With change tracking enabled, only tiles that changed in the previous
+ * generation, or that border such a tile, are computed.  Every other tile is
+ * known to keep its current state, so settled regions cost nothing.
+ * @author Alex Maskovyak
+ *
+ */
+public class TiledGameOfLifeSimulator implements GameOfLifeSimulator {
+
+	/**
+	 * A 64x64 block of cells, one word per row, bit j of a row holding the
+	 * cell at x = 64 * tx + j.
+	 */
+	protected static final class Tile {
+		final int tx, ty;
+		long[] rows = new long[TILE_SIZE];
+		long[] next = new long[TILE_SIZE];
+
+		// cells of the tile that lie inside the world
+		long columnMask = -1L;
+		int firstRow = 0;
+		int lastRow = TILE_SIZE - 1;
+		boolean clipped;
+
+		int population;
+
+		// step in which the tile was last scheduled, or was last needed to
+		// catch life spilling over from a neighbor
+		int activeStep = -1;
+		int requiredStep = -1;
+		boolean removed;
+
+		Tile(int tx, int ty) {
+			this.tx = tx;
+			this.ty = ty;
+		}
+	}
+
+	//
+	// Private member variables
+	//
+
+	public static final int TILE_SIZE = 64;
+	protected static final int TILE_SHIFT = 6;
+	protected static final long[] EMPTY_ROWS = new long[TILE_SIZE];
+
+	// tiles keyed by packed tile coordinates
+	protected HashMap<Long, Tile> tiles;
+	protected int livingCellCount;
+
+	// tiles to compute in the coming step, and in the one after it
+	protected boolean trackChanges;
+	protected List<Tile> activeTiles;
+	protected List<Tile> nextActiveTiles;
+	protected int stepCount;
+	protected boolean inStep;
+
+	// additional cell / game rules
+	protected CellLifeRules rules;
+	protected CellNeighborhood neighborhood;
+	protected int survivalMask;
+	protected int birthMask;
+
+
+	/**
+	 * Default constructor.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity.
+	 */
+	public TiledGameOfLifeSimulator(
+			CellLifeRules rules,
+			CellNeighborhood neighborhood) {
+		this(new ArrayList<Cell>(), rules, neighborhood);
+	}
+
+	/**
+	 * Constructor.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity.
+	 */
+	public TiledGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood) {
+		this(liveCells, rules, neighborhood, false);
+	}
+
+	/**
+	 * Constructor.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity.
+	 * @param trackChanges True to skip tiles whose surroundings did not change
+	 * 			in the previous generation.
+	 */
+	public TiledGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood,
+			boolean trackChanges)
+	{
+		if (neighborhood.isWrapping()) {
+			throw new IllegalArgumentException(
+					"TiledGameOfLifeSimulator does not support wrapping neighborhoods.");
+		}
+
+		this.tiles = new HashMap<Long, Tile>();
+		this.activeTiles = new ArrayList<Tile>();
+		this.nextActiveTiles = new ArrayList<Tile>();
+		this.trackChanges = trackChanges;
+
+		this.rules = rules;
+		this.neighborhood = neighborhood;
+		this.survivalMask = BitLifeKernel.survivalMask(rules);
+		this.birthMask = BitLifeKernel.birthMask(rules);
+
+		// add live cells to the tiles
+		this.addLivingCells(liveCells);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#performSimulation()
+	 */
+	public void performSimulation() throws Exception {
+		this.stepCount++;
+
+		this.inStep = true;
+
+		// without tracking, every tile is computed
+		if (!this.trackChanges) {
+			this.activeTiles.clear();
+			this.activeTiles.addAll(this.tiles.values());
+		}
+		List<Tile> active = this.activeTiles;
+
+		// forget tiles that were scheduled and then released
+		int kept = 0;
+		for (int i = 0, size = active.size(); i < size; ++i) {
+			Tile tile = active.get(i);
+			if (!tile.removed) {
+				active.set(kept++, tile);
+			}
+		}
+		active.subList(kept, active.size()).clear();
+
+		// make room for life growing out of its tiles
+		this.createEdgeTiles();
+
+		// compute the next generation of every active tile
+		for (int i = 0, size = active.size(); i < size; ++i) {
+			this.stepTile(active.get(i));
+		}
+
+		// make the next generation current, dropping tiles that died out
+		for (int i = 0, size = active.size(); i < size; ++i) {
+			Tile tile = active.get(i);
+			int population = tile.population;
+			boolean changed = this.swapTile(tile);
+			this.livingCellCount += tile.population - population;
+
+			if (tile.population == 0 && tile.requiredStep != this.stepCount) {
+				this.tiles.remove(PackedCellTable.pack(tile.tx, tile.ty));
+				tile.removed = true;
+			}
+			if (changed) {
+				this.activateAround(tile);
+			}
+		}
+
+		// tiles touched by a change are the ones to compute next time
+		this.activeTiles = this.nextActiveTiles;
+		this.nextActiveTiles = active;
+		this.nextActiveTiles.clear();
+		this.inStep = false;
+	}
+
+	/**
+	 * Determines whether tiles that did not change are skipped.
+	 * @return True if change tracking is enabled.
+	 */
+	public boolean isTrackingChanges() {
+		return this.trackChanges;
+	}
+
+	/**
+	 * Turns change tracking on or off.  Every tile is computed in the step
+	 * following a change of mode.
+	 * @param trackChanges True to skip tiles whose surroundings did not
+	 * 			change in the previous generation.
+	 */
+	public void setTrackingChanges(boolean trackChanges) {
+		this.trackChanges = trackChanges;
+		this.activateAll();
+	}
+
+	/**
+	 * Schedules the tile and its eight neighbors for the next step.
+	 * @param tile Tile that changed.
+	 */
+	protected void activateAround(Tile tile) {
+		for (int dy = -1; dy <= 1; ++dy) {
+			for (int dx = -1; dx <= 1; ++dx) {
+				Tile neighbor = (dx == 0 && dy == 0) ?
+						tile : this.tiles.get(PackedCellTable.pack(tile.tx + dx, tile.ty + dy));
+				this.activate(neighbor);
+			}
+		}
+	}
+
+	/**
+	 * Schedules the tile for the next step.
+	 * @param tile Tile to compute, may be null.
+	 */
+	protected void activate(Tile tile) {
+		if (tile == null || tile.removed || tile.activeStep == this.stepCount + 1) {
+			return;
+		}
+		tile.activeStep = this.stepCount + 1;
+
+		// between steps the coming step's list is still being filled
+		if (this.inStep) {
+			this.nextActiveTiles.add(tile);
+		}
+		else {
+			this.activeTiles.add(tile);
+		}
+	}
+
+	/**
+	 * Schedules every tile for the next step.
+	 */
+	protected void activateAll() {
+		for (Tile tile : this.tiles.values()) {
+			this.activate(tile);
+		}
+	}
+
+	/**
+	 * Creates empty tiles next to every active tile with live cells on the
+	 * shared edge or corner, so that births across tile edges have somewhere
+	 * to go.  New tiles are computed in this step.
+	 */
+	protected void createEdgeTiles() {
+		List<Tile> active = this.activeTiles;
+
+		for (int i = 0, size = active.size(); i < size; ++i) {
+			Tile tile = active.get(i);
+			long[] rows = tile.rows;
+			long columns = 0;
+			for (int r = 0; r < TILE_SIZE; ++r) {
+				columns |= rows[r];
+			}
+			boolean north = rows[0] != 0;
+			boolean south = rows[TILE_SIZE - 1] != 0;
+			boolean west = (columns & 1L) != 0;
+			boolean east = (columns & (1L << 63)) != 0;
+
+			if (north) this.requireTile(tile.tx, tile.ty - 1);
+			if (south) this.requireTile(tile.tx, tile.ty + 1);
+			if (west) this.requireTile(tile.tx - 1, tile.ty);
+			if (east) this.requireTile(tile.tx + 1, tile.ty);
+			if ((rows[0] & 1L) != 0) this.requireTile(tile.tx - 1, tile.ty - 1);
+			if ((rows[0] & (1L << 63)) != 0) this.requireTile(tile.tx + 1, tile.ty - 1);
+			if ((rows[TILE_SIZE - 1] & 1L) != 0) this.requireTile(tile.tx - 1, tile.ty + 1);
+			if ((rows[TILE_SIZE - 1] & (1L << 63)) != 0) this.requireTile(tile.tx + 1, tile.ty + 1);
+		}
+	}
+
+	/**
+	 * Marks the tile at the given tile coordinates as needed for this step,
+	 * creating it if it does not exist and lies inside the world.
+	 * @param tx Tile x coordinate.
+	 * @param ty Tile y coordinate.
+	 */
+	protected void requireTile(int tx, int ty) {
+		Long key = PackedCellTable.pack(tx, ty);
+		Tile tile = this.tiles.get(key);
+
+		if (tile == null) {
+			tile = this.createTile(tx, ty);
+			if (tile == null) {
+				return;
+			}
+			this.tiles.put(key, tile);
+			tile.activeStep = this.stepCount;
+			this.activeTiles.add(tile);
+		}
+		tile.requiredStep = this.stepCount;
+	}
+
+	/**
+	 * Creates an empty tile, restricting it to the world's bounds.
+	 * @param tx Tile x coordinate.
+	 * @param ty Tile y coordinate.
+	 * @return New tile, null if it lies entirely outside the world.
+	 */
+	protected Tile createTile(int tx, int ty) {
+		Tile tile = new Tile(tx, ty);
+
+		Rectangle bounds = this.neighborhood.getBounds();
+		if (bounds == null) {
+			return tile;
+		}
+
+		long x0 = (long)tx << TILE_SHIFT;
+		long y0 = (long)ty << TILE_SHIFT;
+		long firstColumn = Math.max(bounds.x - x0, 0);
+		long lastColumn = Math.min((long)bounds.x + bounds.width - 1 - x0, TILE_SIZE - 1);
+		long firstRow = Math.max(bounds.y - y0, 0);
+		long lastRow = Math.min((long)bounds.y + bounds.height - 1 - y0, TILE_SIZE - 1);
+
+		if (firstColumn > lastColumn || firstRow > lastRow) {
+			return null;
+		}
+
+		tile.columnMask = (-1L >>> (63 - lastColumn)) & (-1L << firstColumn);
+		tile.firstRow = (int)firstRow;
+		tile.lastRow = (int)lastRow;
+		tile.clipped = (tile.columnMask != -1L || firstRow != 0 || lastRow != TILE_SIZE - 1);
+		return tile;
+	}
+
+	/**
+	 * Retrieves the rows of the tile at the given tile coordinates.
+	 * @param tx Tile x coordinate.
+	 * @param ty Tile y coordinate.
+	 * @return The tile's current rows, or empty rows if there is no tile.
+	 */
+	protected long[] rowsOf(int tx, int ty) {
+		Tile tile = this.tiles.get(PackedCellTable.pack(tx, ty));
+		return (tile == null) ? EMPTY_ROWS : tile.rows;
+	}
+
+	/**
+	 * Computes the tile's next generation into its next rows.
+	 * @param tile Tile to compute.
+	 */
+	protected void stepTile(Tile tile) {
+		int tx = tile.tx, ty = tile.ty;
+
+		long[] center = tile.rows;
+		long[] north = this.rowsOf(tx, ty - 1);
+		long[] south = this.rowsOf(tx, ty + 1);
+		long[] west = this.rowsOf(tx - 1, ty);
+		long[] east = this.rowsOf(tx + 1, ty);
+
+		// only the facing corner cell of a diagonal tile matters
+		long northWest = this.rowsOf(tx - 1, ty - 1)[TILE_SIZE - 1];
+		long northEast = this.rowsOf(tx + 1, ty - 1)[TILE_SIZE - 1];
+		long southWest = this.rowsOf(tx - 1, ty + 1)[0];
+		long southEast = this.rowsOf(tx + 1, ty + 1)[0];
+
+		long[] next = tile.next;
+		int last = TILE_SIZE - 1;
+
+		for (int r = 0; r < TILE_SIZE; ++r) {
+			long abovePrev, above, aboveNext, belowPrev, below, belowNext;
+
+			if (r == 0) {
+				abovePrev = northWest;
+				above = north[last];
+				aboveNext = northEast;
+			}
+			else {
+				abovePrev = west[r - 1];
+				above = center[r - 1];
+				aboveNext = east[r - 1];
+			}
+
+			if (r == last) {
+				belowPrev = southWest;
+				below = south[0];
+				belowNext = southEast;
+			}
+			else {
+				belowPrev = west[r + 1];
+				below = center[r + 1];
+				belowNext = east[r + 1];
+			}
+
+			next[r] = BitLifeKernel.nextWord(
+					abovePrev, above, aboveNext,
+					west[r], center[r], east[r],
+					belowPrev, below, belowNext,
+					this.survivalMask,
+					this.birthMask);
+		}
+
+		// cells outside of the world never come to life
+		if (tile.clipped) {
+			for (int r = 0; r < TILE_SIZE; ++r) {
+				next[r] = (r < tile.firstRow || r > tile.lastRow) ? 0 : (next[r] & tile.columnMask);
+			}
+		}
+	}
+
+	/**
+	 * Makes the tile's next rows current and recounts its population.
+	 * @param tile Tile to update.
+	 * @return True if any cell of the tile changed state.
+	 */
+	protected boolean swapTile(Tile tile) {
+		long[] temp = tile.rows;
+		tile.rows = tile.next;
+		tile.next = temp;
+
+		int population = 0;
+		long difference = 0;
+		for (int r = 0; r < TILE_SIZE; ++r) {
+			population += Long.bitCount(tile.rows[r]);
+			difference |= tile.rows[r] ^ tile.next[r];
+		}
+		tile.population = population;
+		return difference != 0;
+	}
+
+	/**
+	 * Retrieves the tile holding the cell, creating it if needed.
+	 * @param cell Cell inside of the world.
+	 * @return Tile holding the cell.
+	 */
+	protected Tile tileFor(Cell cell) {
+		int tx = cell.x >> TILE_SHIFT;
+		int ty = cell.y >> TILE_SHIFT;
+		Long key = PackedCellTable.pack(tx, ty);
+
+		Tile tile = this.tiles.get(key);
+		if (tile == null) {
+			tile = this.createTile(tx, ty);
+			this.tiles.put(key, tile);
+		}
+		return tile;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#getCurrentState()
+	 */
+	public List<Cell> getCurrentState() {
+		List<Cell> cells = new ArrayList<Cell>(this.livingCellCount);
+
+		for (Tile tile : this.tiles.values()) {
+			int x0 = tile.tx << TILE_SHIFT;
+			int y0 = tile.ty << TILE_SHIFT;
+			for (int r = 0; r < TILE_SIZE; ++r) {
+				long word = tile.rows[r];
+				while (word != 0) {
+					cells.add(new Cell(x0 + Long.numberOfTrailingZeros(word), y0 + r));
+					word &= word - 1;
+				}
+			}
+		}
+
+		return cells;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#addLivingCell()
+	 */
+	public void addLivingCell(Cell livingCell) {
+		// ensure that this cell is a resident of the neighborhood
+		// if it isn't, don't bother with the needless computation
+		if (!this.neighborhood.isResident(livingCell)) {
+			return;
+		}
+
+		Tile tile = this.tileFor(livingCell);
+		long bit = 1L << (livingCell.x & (TILE_SIZE - 1));
+		int r = livingCell.y & (TILE_SIZE - 1);
+		if ((tile.rows[r] & bit) == 0) {
+			tile.rows[r] |= bit;
+			tile.population++;
+			this.livingCellCount++;
+
+			// the edit has to be seen by this tile and its neighbors
+			this.activateAround(tile);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see GameOfLifeSimulator#addLivingCells()
+	 */
+	public void addLivingCells(List<Cell> livingCells) {
+		for (Cell c : livingCells) {
+			this.addLivingCell(c);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#clearLivingCells()
+	 */
+	public void clearLivingCells() {
+		for (Tile tile : this.tiles.values()) {
+			tile.removed = true;
+		}
+		this.tiles.clear();
+		this.activeTiles.clear();
+		this.livingCellCount = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#removeLivingCell(Cell)
+	 */
+	public void removeLivingCell(Cell livingCell) {
+		Tile tile = this.tiles.get(PackedCellTable.pack(
+				livingCell.x >> TILE_SHIFT,
+				livingCell.y >> TILE_SHIFT));
+		if (tile == null) {
+			return;
+		}
+
+		long bit = 1L << (livingCell.x & (TILE_SIZE - 1));
+		int r = livingCell.y & (TILE_SIZE - 1);
+		if ((tile.rows[r] & bit) != 0) {
+			tile.rows[r] &= ~bit;
+			tile.population--;
+			this.livingCellCount--;
+
+			// the edit has to be seen by this tile and its neighbors
+			this.activateAround(tile);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#removeLivingCells(java.util.List)
+	 */
+	public void removeLivingCells(List<Cell> livingCells) {
+		for (Cell c : livingCells) {
+			this.removeLivingCell(c);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see GameOfLifeSimulator#getLivingCellCount()
+	 */
+	public int getLivingCellCount() {
+		return this.livingCellCount;
+	}
+}
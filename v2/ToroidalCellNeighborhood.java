@@ -0,0 +1,114 @@
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Conway cell neighborhood whose world wraps around at its bounds: the
+ * leftmost column neighbors the rightmost, and the top row the bottom row,
+ * so the world is a torus with no edges.  The wrapped coordinate of every
+ * column and row one step past either edge is computed once, so neighbors
+ * are found by table lookup instead of a modulo per cell.
+ * @author Alex Maskovyak
+ *
+ */
+public class ToroidalCellNeighborhood extends ConwayCellNeighborhood {
+
+	// wrappedColumns[x - xMin + 1] holds x wrapped into the world, for x from
+	// xMin - 1 to xMax inclusive, and likewise for wrappedRows
+	protected int[] wrappedColumns;
+	protected int[] wrappedRows;
+
+	/**
+	 * Constructor, creates a wrapping game world of the specified bounds.
+	 * @param xMinBounds Smallest x axis value.
+	 * @param xMaxBounds Largest x axis value.
+	 * @param yMinBounds Smallest y axis value.
+	 * @param yMaxBounds Largest y axis value.
+	 */
+	public ToroidalCellNeighborhood(
+			int xMinBounds,
+			int xMaxBounds,
+			int yMinBounds,
+			int yMaxBounds)
+	{
+		this(new Rectangle(xMinBounds, yMinBounds, xMaxBounds - xMinBounds, yMaxBounds - yMinBounds));
+	}
+
+	/**
+	 * Constructor, creates a wrapping game world from the specified bounds.
+	 * @param bounds Boundary for this game world, must not be empty.
+	 */
+	public ToroidalCellNeighborhood(Rectangle bounds) {
+		super(bounds);
+
+		if (bounds.width <= 0 || bounds.height <= 0) {
+			throw new IllegalArgumentException(
+					"ToroidalCellNeighborhood requires a non-empty world.");
+		}
+
+		this.wrappedColumns = wrap(this.xMin, this.xMax);
+		this.wrappedRows = wrap(this.yMin, this.yMax);
+	}
+
+	/**
+	 * Builds the wrapped coordinate table for one axis.
+	 * @param min Smallest coordinate in the world.
+	 * @param max One past the largest coordinate in the world.
+	 * @return Coordinates from min - 1 to max inclusive, wrapped.
+	 */
+	protected static int[] wrap(int min, int max) {
+		int size = max - min;
+		int[] wrapped = new int[size + 2];
+		for (int i = 0; i < wrapped.length; ++i) {
+			wrapped[i] = min + ((i - 1 + size) % size);
+		}
+		return wrapped;
+	}
+
+	/* (non-Javadoc)
+	 * @see CellNeighborhood#getNeighborIdentities()
+	 */
+	public List<Cell> getNeighborIdentities(Cell home) {
+		final List<Cell> neighborList = new ArrayList<Cell>(8);
+
+		this.visitNeighbors(home.x, home.y, new NeighborVisitor() {
+			public void visit(int x, int y) {
+				neighborList.add(new Cell(x, y));
+			}
+		});
+
+		return neighborList;
+	}
+
+	/* (non-Javadoc)
+	 * @see CellNeighborhood#visitNeighbors(int, int, NeighborVisitor)
+	 */
+	public void visitNeighbors(int x, int y, NeighborVisitor visitor) {
+		// the table index of x is x - xMin + 1, so its neighbors sit to
+		// either side
+		int column = x - this.xMin;
+		int row = y - this.yMin;
+
+		int west = this.wrappedColumns[column];
+		int east = this.wrappedColumns[column + 2];
+		int north = this.wrappedRows[row];
+		int south = this.wrappedRows[row + 2];
+
+		// same order as the bounded neighborhood
+		visitor.visit(west, north);
+		visitor.visit(west, y);
+		visitor.visit(west, south);
+		visitor.visit(x, north);
+		visitor.visit(x, south);
+		visitor.visit(east, north);
+		visitor.visit(east, y);
+		visitor.visit(east, south);
+	}
+
+	/* (non-Javadoc)
+	 * @see CellNeighborhood#isWrapping()
+	 */
+	public boolean isWrapping() {
+		return true;
+	}
+}
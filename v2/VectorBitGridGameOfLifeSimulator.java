@@ -0,0 +1,172 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * VectorBitGridGameOfLifeSimulator is a BitGridGameOfLifeSimulator whose rows
+ * are computed with the JDK Vector API, several row words per instruction.
+ * The neighboring words of each lane are read with loads shifted one word to
+ * either side, which the board's padding words keep in range.  Words left
+ * over at the end of a row, and whole rows when the platform offers no
+ * vector lanes, go through the scalar BitLifeKernel.
+ *
+ * Compiling and running requires --add-modules jdk.incubator.vector.
+ * @author Alex Maskovyak
+ *
+ */
+public class VectorBitGridGameOfLifeSimulator extends BitGridGameOfLifeSimulator {
+
+	//
+	// Private member variables
+	//
+	protected static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+	protected final int lanes;
+	protected final boolean conway;
+
+
+	/**
+	 * Default constructor.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded.
+	 */
+	public VectorBitGridGameOfLifeSimulator(
+			CellLifeRules rules,
+			CellNeighborhood neighborhood) {
+		this(new ArrayList<Cell>(), rules, neighborhood);
+	}
+
+	/**
+	 * Constructor.
+	 * @param liveCells List of live cells to manage.
+	 * @param rules Rules to determine a cell's next state.
+	 * @param neighborhood Determines cell connectivity, must be bounded.
+	 */
+	public VectorBitGridGameOfLifeSimulator(
+			List<Cell> liveCells,
+			CellLifeRules rules,
+			CellNeighborhood neighborhood)
+	{
+		super(liveCells, rules, neighborhood);
+
+		this.lanes = SPECIES.length();
+		this.conway = (this.survivalMask == BitLifeKernel.CONWAY_SURVIVAL_MASK &&
+				this.birthMask == BitLifeKernel.CONWAY_BIRTH_MASK);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see BitGridGameOfLifeSimulator#stepRow(int)
+	 */
+	protected void stepRow(int row) {
+		// a single lane gains nothing over the scalar kernel
+		if (this.lanes < 2) {
+			super.stepRow(row);
+			return;
+		}
+
+		long[] src = this.current;
+		long[] dst = this.next;
+		int offset = this.rowOffset(row);
+		int aboveOffset = offset - this.stride;
+		int belowOffset = offset + this.stride;
+
+		int i = 0;
+		for (int limit = this.words - this.lanes; i <= limit; i += this.lanes) {
+			// the whole kernel stays in this loop, since a vector passed to a
+			// method the JIT does not inline is boxed
+			LongVector above = LongVector.fromArray(SPECIES, src, aboveOffset + i);
+			LongVector center = LongVector.fromArray(SPECIES, src, offset + i);
+			LongVector below = LongVector.fromArray(SPECIES, src, belowOffset + i);
+
+			// lane bit j of each vector holds the neighbor in that direction;
+			// western neighbors shift each lane one cell east, filling bit 0
+			// from the word to the west, and eastern neighbors the reverse
+			LongVector nw = above.lanewise(VectorOperators.LSHL, 1).or(
+					LongVector.fromArray(SPECIES, src, aboveOffset + i - 1).lanewise(VectorOperators.LSHR, 63));
+			LongVector n  = above;
+			LongVector ne = above.lanewise(VectorOperators.LSHR, 1).or(
+					LongVector.fromArray(SPECIES, src, aboveOffset + i + 1).lanewise(VectorOperators.LSHL, 63));
+			LongVector w  = center.lanewise(VectorOperators.LSHL, 1).or(
+					LongVector.fromArray(SPECIES, src, offset + i - 1).lanewise(VectorOperators.LSHR, 63));
+			LongVector e  = center.lanewise(VectorOperators.LSHR, 1).or(
+					LongVector.fromArray(SPECIES, src, offset + i + 1).lanewise(VectorOperators.LSHL, 63));
+			LongVector sw = below.lanewise(VectorOperators.LSHL, 1).or(
+					LongVector.fromArray(SPECIES, src, belowOffset + i - 1).lanewise(VectorOperators.LSHR, 63));
+			LongVector s  = below;
+			LongVector se = below.lanewise(VectorOperators.LSHR, 1).or(
+					LongVector.fromArray(SPECIES, src, belowOffset + i + 1).lanewise(VectorOperators.LSHL, 63));
+
+			// same adder network as BitLifeKernel.nextWord
+			LongVector s0 = nw.lanewise(VectorOperators.XOR, n).lanewise(VectorOperators.XOR, ne);
+			LongVector c0 = nw.and(n).or(ne.and(nw.lanewise(VectorOperators.XOR, n)));
+			LongVector s1 = w.lanewise(VectorOperators.XOR, e).lanewise(VectorOperators.XOR, sw);
+			LongVector c1 = w.and(e).or(sw.and(w.lanewise(VectorOperators.XOR, e)));
+			LongVector s2 = s.lanewise(VectorOperators.XOR, se);
+			LongVector c2 = s.and(se);
+
+			LongVector bit0 = s0.lanewise(VectorOperators.XOR, s1).lanewise(VectorOperators.XOR, s2);
+			LongVector c3 = s0.and(s1).or(s2.and(s0.lanewise(VectorOperators.XOR, s1)));
+
+			LongVector t = c0.lanewise(VectorOperators.XOR, c1).lanewise(VectorOperators.XOR, c2);
+			LongVector c4 = c0.and(c1).or(c2.and(c0.lanewise(VectorOperators.XOR, c1)));
+			LongVector bit1 = t.lanewise(VectorOperators.XOR, c3);
+			LongVector c5 = t.and(c3);
+
+			LongVector bit2 = c4.lanewise(VectorOperators.XOR, c5);
+			LongVector bit3 = c4.and(c5);
+
+			LongVector result;
+			if (this.conway) {
+				// count of 2 or 3, and either alive or exactly 3
+				result = bit1.lanewise(VectorOperators.AND_NOT, bit2.or(bit3)).and(bit0.or(center));
+			}
+			else {
+				LongVector survivors = LongVector.zero(SPECIES);
+				LongVector births = LongVector.zero(SPECIES);
+
+				for (int count = 0; count <= 8; ++count) {
+					int bit = 1 << count;
+					if (((this.survivalMask | this.birthMask) & bit) == 0) {
+						continue;
+					}
+
+					// cells whose count is exactly this value
+					LongVector equal =
+						((count & 1) != 0 ? bit0 : bit0.not()).and(
+						((count & 2) != 0 ? bit1 : bit1.not())).and(
+						((count & 4) != 0 ? bit2 : bit2.not())).and(
+						((count & 8) != 0 ? bit3 : bit3.not()));
+
+					if ((this.survivalMask & bit) != 0) {
+						survivors = survivors.or(equal);
+					}
+					if ((this.birthMask & bit) != 0) {
+						births = births.or(equal);
+					}
+				}
+
+				result = center.and(survivors).or(births.lanewise(VectorOperators.AND_NOT, center));
+			}
+
+			result.intoArray(dst, offset + i);
+		}
+
+		// the rest of the row
+		for (; i < this.words; ++i) {
+			dst[offset + i] = BitLifeKernel.nextWord(
+					src[aboveOffset + i - 1], src[aboveOffset + i], src[aboveOffset + i + 1],
+					src[offset + i - 1], src[offset + i], src[offset + i + 1],
+					src[belowOffset + i - 1], src[belowOffset + i], src[belowOffset + i + 1],
+					this.survivalMask,
+					this.birthMask);
+		}
+
+		// cells past the right edge of the world never come to life
+		dst[offset + this.words - 1] &= this.lastWordMask;
+	}
+}